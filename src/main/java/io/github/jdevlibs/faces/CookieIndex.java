@@ -0,0 +1,184 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces;
+
+import jakarta.servlet.http.Cookie;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Request cookies indexed by name, built once per request by {@link RequestSnapshot}.
+ * The first cookie of a duplicated name is used (the most specific path is sent first by browsers).
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class CookieIndex {
+	private static final CookieIndex EMPTY = new CookieIndex(Collections.emptyMap());
+
+	private final Map<String, String> values;
+
+	private CookieIndex(Map<String, String> values) {
+		this.values = values;
+	}
+
+	/**
+	 * @param cookies The request cookies, can be null
+	 * @return Cookie index
+	 */
+	public static CookieIndex of(Cookie[] cookies) {
+		if (cookies == null || cookies.length == 0) {
+			return EMPTY;
+		}
+
+		Map<String, String> values = new HashMap<>(cookies.length * 2);
+		for (Cookie cookie : cookies) {
+			values.putIfAbsent(cookie.getName(), cookie.getValue());
+		}
+		return new CookieIndex(values);
+	}
+
+	public String get(String name) {
+		return (name == null ? null : values.get(name));
+	}
+
+	public boolean contains(String name) {
+		return name != null && values.containsKey(name);
+	}
+
+	public int getInt(String name, int defaultValue) {
+		String value = get(name);
+		if (JSFValidators.isEmpty(value)) {
+			return defaultValue;
+		}
+
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException ex) {
+			return defaultValue;
+		}
+	}
+
+	public long getLong(String name, long defaultValue) {
+		String value = get(name);
+		if (JSFValidators.isEmpty(value)) {
+			return defaultValue;
+		}
+
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException ex) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @param name The cookie name
+	 * @param defaultValue Value when the cookie is missing
+	 * @return true for true, 1, yes or on (case insensitive)
+	 */
+	public boolean getBoolean(String name, boolean defaultValue) {
+		String value = get(name);
+		if (JSFValidators.isEmpty(value)) {
+			return defaultValue;
+		}
+
+		value = value.trim();
+		return "true".equalsIgnoreCase(value) || "1".equals(value) || "yes".equalsIgnoreCase(value)
+				|| "on".equalsIgnoreCase(value);
+	}
+
+	/**
+	 * Decode several values kept in one cookie, written by {@link CookieWriter#add(String, Map)}
+	 * @param name The cookie name
+	 * @return Decoded values in the written order, empty when missing
+	 */
+	public Map<String, String> getStruct(String name) {
+		return decode(get(name));
+	}
+
+	public Map<String, String> getValues() {
+		return Collections.unmodifiableMap(values);
+	}
+
+	/**
+	 * Encode values as one cookie value, Ex. theme=dark&amp;size=12 (URL encoded, cookie safe)
+	 * @param values The values
+	 * @return The cookie value
+	 */
+	public static String encode(Map<String, ?> values) {
+		StringBuilder buffer = new StringBuilder();
+		for (Map.Entry<String, ?> item : values.entrySet()) {
+			if (buffer.length() > 0) {
+				buffer.append('&');
+			}
+			buffer.append(urlEncode(item.getKey()));
+			if (item.getValue() != null) {
+				buffer.append('=').append(urlEncode(String.valueOf(item.getValue())));
+			}
+		}
+		return buffer.toString();
+	}
+
+	public static Map<String, String> decode(String value) {
+		if (JSFValidators.isEmpty(value)) {
+			return Collections.emptyMap();
+		}
+
+		Map<String, String> values = new LinkedHashMap<>();
+		for (String pair : value.split("&")) {
+			if (pair.isEmpty()) {
+				continue;
+			}
+
+			int index = pair.indexOf('=');
+			try {
+				if (index == -1) {
+					values.put(urlDecode(pair), null);
+				} else {
+					values.put(urlDecode(pair.substring(0, index)), urlDecode(pair.substring(index + 1)));
+				}
+			} catch (IllegalArgumentException ex) {
+				// Skip malformed value
+			}
+		}
+		return Collections.unmodifiableMap(values);
+	}
+
+	private static String urlEncode(String value) {
+		try {
+			return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static String urlDecode(String value) {
+		try {
+			return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+}
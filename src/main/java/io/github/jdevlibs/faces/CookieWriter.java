@@ -0,0 +1,257 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write several cookies sharing the same attributes (Max-Age, Path, Domain, Secure, HttpOnly, SameSite),
+ * the attributes are formatted once for the whole batch.
+ * <pre>
+ * FacesUtils.cookieWriter().maxAge(30 * 86400).path("/").sameSite("Lax")
+ *         .add("theme", "dark")
+ *         .add("fontSize", 14)
+ *         .add("prefs", Map.of("menu", "collapsed", "lang", "th"))
+ *         .write();
+ * </pre>
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class CookieWriter {
+	private static final String SET_COOKIE = "Set-Cookie";
+	private static final String SEPARATORS = "()<>@,;:\\\"/[]?={} \t";
+
+	private final HttpServletResponse response;
+	private final List<String[]> cookies = new ArrayList<>();
+	private int maxAge = -1;
+	private String path;
+	private String domain;
+	private boolean secure;
+	private boolean httpOnly;
+	private String sameSite;
+
+	private CookieWriter(HttpServletResponse response) {
+		this.response = response;
+	}
+
+	public static CookieWriter of(HttpServletResponse response) {
+		return new CookieWriter(response);
+	}
+
+	/**
+	 * @param name The cookie name
+	 * @param value The cookie value, use {@link #add(String, Map)} for values with space, comma, semicolon or quote
+	 * @return This
+	 * @throws IllegalArgumentException When the name or value is not valid (RFC 6265)
+	 */
+	public CookieWriter add(String name, String value) {
+		checkName(name);
+		String text = (value == null ? "" : value);
+		checkValue(text);
+		cookies.add(new String[] {name, text});
+		return this;
+	}
+
+	public CookieWriter add(String name, int value) {
+		return add(name, String.valueOf(value));
+	}
+
+	public CookieWriter add(String name, long value) {
+		return add(name, String.valueOf(value));
+	}
+
+	public CookieWriter add(String name, boolean value) {
+		return add(name, String.valueOf(value));
+	}
+
+	/**
+	 * Add several values as one cookie, read by {@link CookieIndex#getStruct(String)}
+	 * @param name The cookie name
+	 * @param values The values
+	 * @return This
+	 */
+	public CookieWriter add(String name, Map<String, ?> values) {
+		return add(name, CookieIndex.encode(values));
+	}
+
+	/**
+	 * Max-Age in seconds, 0 delete the cookies. [default -1, browser session]
+	 * @param maxAge The max age in seconds
+	 */
+	public CookieWriter maxAge(int maxAge) {
+		this.maxAge = maxAge;
+		return this;
+	}
+
+	/**
+	 * @param path The cookie path
+	 * @throws IllegalArgumentException When the path contains control characters or semicolon
+	 */
+	public CookieWriter path(String path) {
+		checkPath(path);
+		this.path = path;
+		return this;
+	}
+
+	/**
+	 * @param domain The cookie domain, Ex. example.com
+	 * @throws IllegalArgumentException When the domain is not a host name
+	 */
+	public CookieWriter domain(String domain) {
+		checkDomain(domain);
+		this.domain = domain;
+		return this;
+	}
+
+	public CookieWriter secure(boolean secure) {
+		this.secure = secure;
+		return this;
+	}
+
+	public CookieWriter httpOnly(boolean httpOnly) {
+		this.httpOnly = httpOnly;
+		return this;
+	}
+
+	/**
+	 * @param sameSite Strict, Lax or None (None require secure)
+	 * @throws IllegalArgumentException When the value is not Strict, Lax or None
+	 */
+	public CookieWriter sameSite(String sameSite) {
+		checkSameSite(sameSite);
+		this.sameSite = sameSite;
+		return this;
+	}
+
+	/**
+	 * Add Set-Cookie headers of all cookies
+	 * @return Number of cookies written
+	 */
+	public int write() {
+		if (cookies.isEmpty()) {
+			return 0;
+		}
+
+		String attributes = formatAttributes();
+		StringBuilder buffer = new StringBuilder(64 + attributes.length());
+		for (String[] cookie : cookies) {
+			buffer.setLength(0);
+			buffer.append(cookie[0]).append('=').append(cookie[1]).append(attributes);
+			response.addHeader(SET_COOKIE, buffer.toString());
+		}
+
+		int count = cookies.size();
+		cookies.clear();
+		return count;
+	}
+
+	private String formatAttributes() {
+		StringBuilder buffer = new StringBuilder();
+		if (maxAge >= 0) {
+			buffer.append("; Max-Age=").append(maxAge);
+			// Expires for old browsers, same as the container cookie processor
+			Instant expires = (maxAge == 0 ? Instant.EPOCH : Instant.now().plusSeconds(maxAge));
+			buffer.append("; Expires=")
+					.append(DateTimeFormatter.RFC_1123_DATE_TIME.format(expires.atOffset(ZoneOffset.UTC)));
+		}
+		if (JSFValidators.isNotEmpty(domain)) {
+			buffer.append("; Domain=").append(domain);
+		}
+		if (JSFValidators.isNotEmpty(path)) {
+			buffer.append("; Path=").append(path);
+		}
+		if (secure) {
+			buffer.append("; Secure");
+		}
+		if (httpOnly) {
+			buffer.append("; HttpOnly");
+		}
+		if (JSFValidators.isNotEmpty(sameSite)) {
+			buffer.append("; SameSite=").append(sameSite);
+		}
+		return buffer.toString();
+	}
+
+	private static void checkName(String name) {
+		if (JSFValidators.isEmpty(name)) {
+			throw new IllegalArgumentException("Cookie name is empty");
+		}
+
+		for (int i = 0; i < name.length(); i++) {
+			char ch = name.charAt(i);
+			if (ch <= 0x20 || ch >= 0x7F || SEPARATORS.indexOf(ch) != -1) {
+				throw new IllegalArgumentException("Invalid cookie name : " + name);
+			}
+		}
+	}
+
+	private static void checkValue(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char ch = value.charAt(i);
+			// cookie-octet of RFC 6265
+			if (ch <= 0x20 || ch >= 0x7F || ch == '"' || ch == ',' || ch == ';' || ch == '\\') {
+				throw new IllegalArgumentException("Invalid cookie value : " + value);
+			}
+		}
+	}
+
+	private static void checkPath(String path) {
+		if (path == null) {
+			return;
+		}
+
+		for (int i = 0; i < path.length(); i++) {
+			char ch = path.charAt(i);
+			// av-octet of RFC 6265
+			if (ch < 0x20 || ch >= 0x7F || ch == ';') {
+				throw new IllegalArgumentException("Invalid cookie path : " + path);
+			}
+		}
+	}
+
+	private static void checkDomain(String domain) {
+		if (domain == null) {
+			return;
+		}
+
+		for (int i = 0; i < domain.length(); i++) {
+			char ch = domain.charAt(i);
+			if (!(ch >= 'a' && ch <= 'z') && !(ch >= 'A' && ch <= 'Z') && !(ch >= '0' && ch <= '9')
+					&& ch != '.' && ch != '-') {
+				throw new IllegalArgumentException("Invalid cookie domain : " + domain);
+			}
+		}
+	}
+
+	private static void checkSameSite(String sameSite) {
+		if (JSFValidators.isEmpty(sameSite)) {
+			return;
+		}
+		if (!"Strict".equalsIgnoreCase(sameSite) && !"Lax".equalsIgnoreCase(sameSite)
+				&& !"None".equalsIgnoreCase(sameSite)) {
+			throw new IllegalArgumentException("Invalid cookie SameSite : " + sameSite);
+		}
+	}
+}
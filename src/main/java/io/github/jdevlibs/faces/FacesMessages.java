@@ -16,16 +16,31 @@
  */
 package io.github.jdevlibs.faces;
 
+import jakarta.faces.application.ProjectStage;
+import jakarta.faces.component.UIViewRoot;
+import jakarta.faces.context.FacesContext;
+
 import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Messages of the application resource bundle (faces-config resource-bundle var <code>msg</code>,
+ * or system property <code>faces.bundle.var</code>).
+ * The bundle is cached per view locale and the parsed MessageFormat per message key in the application scope,
+ * caches are bypassed in the Development project stage and can be reset by {@link #clearCache()}.
  * @author supot.jdev
  * @version 1.0
  */
 public final class FacesMessages {
     private static final String BUNDLE_CONF_VAR = "msg";
+    private static final String BUNDLE_VAR = System.getProperty("faces.bundle.var", BUNDLE_CONF_VAR);
+    private static final String CACHE_KEY = FacesMessages.class.getName();
 
     private FacesMessages() {
     }
@@ -38,16 +53,32 @@ public final class FacesMessages {
         return getValue(key, params);
     }
 
+    /**
+     * Reset the cached bundles and formats of the current application, Ex. after the message files are reloaded
+     */
+    public static void clearCache() {
+        FacesContext context = FacesContext.getCurrentInstance();
+        if (context != null) {
+            context.getExternalContext().getApplicationMap().remove(CACHE_KEY);
+        }
+    }
+
     private static String getValue(String key, Object[] params) {
         String msg;
         try {
-            msg = getBundle().getString(key);
+            FacesContext context = FacesContext.getCurrentInstance();
+            LocaleMessages messages = getMessages(context);
+            if (messages == null) {
+                return getUncachedValue(key, params);
+            }
+
+            msg = messages.bundle.getString(key);
             if (JSFValidators.isEmpty(msg)) {
                 return msg;
             }
 
             if (JSFValidators.isNotEmpty(params)) {
-                msg = MessageFormat.format(msg, toString(params));
+                msg = messages.getFormat(key, msg).format(toString(params));
             }
         } catch (MissingResourceException | IllegalArgumentException ex) {
             msg = key;
@@ -56,6 +87,19 @@ public final class FacesMessages {
         return msg;
     }
 
+    private static String getUncachedValue(String key, Object[] params) {
+        ResourceBundle bundle = FacesUtils.getResourceBundle(BUNDLE_VAR);
+        if (bundle == null) {
+            return key;
+        }
+
+        String msg = bundle.getString(key);
+        if (JSFValidators.isNotEmpty(msg) && JSFValidators.isNotEmpty(params)) {
+            msg = MessageFormat.format(msg, toString(params));
+        }
+        return msg;
+    }
+
     private static Object[] toString(Object ... params) {
         if (JSFValidators.isEmpty(params)) {
             return params;
@@ -71,8 +115,105 @@ public final class FacesMessages {
         return params;
     }
 
-    private static ResourceBundle getBundle() {
-        String varMsg = System.getProperty("faces.bundle.var", BUNDLE_CONF_VAR);
-        return FacesUtils.getResourceBundle(varMsg);
+    /**
+     * @return Cached messages of the view locale, null when the cache cannot be used
+     */
+    private static LocaleMessages getMessages(FacesContext context) {
+        UIViewRoot root = context.getViewRoot();
+        if (root == null || context.isProjectStage(ProjectStage.Development)) {
+            // Bundle locale is unknown without view, message files may be edited in development
+            return null;
+        }
+
+        // Same locale the bundle is loaded with
+        Locale locale = root.getLocale();
+        if (locale == null) {
+            return null;
+        }
+
+        Map<Locale, LocaleMessages> cache = getCache(context);
+        LocaleMessages messages = cache.get(locale);
+        if (messages == null) {
+            ResourceBundle bundle = FacesUtils.getResourceBundle(BUNDLE_VAR);
+            if (bundle == null) {
+                return null;
+            }
+            messages = cache.computeIfAbsent(locale, k -> new LocaleMessages(bundle));
+        }
+        return messages;
+    }
+
+    /**
+     * @return Cache of the application, each web application has its own bundles
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<Locale, LocaleMessages> getCache(FacesContext context) {
+        Map<String, Object> attributes = context.getExternalContext().getApplicationMap();
+        Map<Locale, LocaleMessages> cache = (Map<Locale, LocaleMessages>) attributes.get(CACHE_KEY);
+        if (cache == null) {
+            // A cache created twice by concurrent requests only loses its first entries
+            cache = new ConcurrentHashMap<>();
+            attributes.put(CACHE_KEY, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Bundle of the locale and the parsed formats by message key
+     */
+    private static final class LocaleMessages {
+        private final ResourceBundle bundle;
+        private final Map<String, FormatPool> formats = new ConcurrentHashMap<>();
+
+        private LocaleMessages(ResourceBundle bundle) {
+            this.bundle = bundle;
+        }
+
+        private FormatPool getFormat(String key, String pattern) {
+            FormatPool pool = formats.get(key);
+            if (pool == null || !pool.pattern.equals(pattern)) {
+                pool = new FormatPool(pattern);
+                formats.put(key, pool);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Parsed MessageFormat of the pattern, MessageFormat is not thread-safe so each caller
+     * use a pooled clone instead of parsing the pattern again
+     */
+    private static final class FormatPool {
+        private static final int MAX_POOLED = 16;
+
+        private final String pattern;
+        private final MessageFormat prototype;
+        private final ConcurrentLinkedQueue<MessageFormat> pool = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pooled = new AtomicInteger();
+
+        private FormatPool(String pattern) {
+            this.pattern = pattern;
+            // Same as MessageFormat.format(pattern, params)
+            this.prototype = new MessageFormat(pattern);
+        }
+
+        private String format(Object[] params) {
+            MessageFormat format = pool.poll();
+            if (format == null) {
+                format = (MessageFormat) prototype.clone();
+            } else {
+                pooled.decrementAndGet();
+            }
+
+            try {
+                return format.format(params);
+            } finally {
+                if (pooled.incrementAndGet() <= MAX_POOLED) {
+                    pool.offer(format);
+                } else {
+                    pooled.decrementAndGet();
+                }
+            }
+        }
     }
 }
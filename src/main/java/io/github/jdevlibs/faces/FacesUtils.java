@@ -31,14 +31,30 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
+import io.github.jdevlibs.faces.download.BufferPool;
+import io.github.jdevlibs.faces.download.ByteArrayResource;
+import io.github.jdevlibs.faces.download.ContentEncodings;
+import io.github.jdevlibs.faces.download.Digests;
+import io.github.jdevlibs.faces.download.DownloadHandler;
+import io.github.jdevlibs.faces.download.DownloadOption;
+import io.github.jdevlibs.faces.download.DownloadResource;
+import io.github.jdevlibs.faces.download.DownloadTracker;
+import io.github.jdevlibs.faces.download.FileResource;
+import io.github.jdevlibs.faces.download.PrecompressedFiles;
+import io.github.jdevlibs.faces.download.ReadAheadStreamer;
+import io.github.jdevlibs.faces.download.SpillBuffer;
+import io.github.jdevlibs.faces.download.StreamDigest;
+import io.github.jdevlibs.faces.download.StreamMode;
+import io.github.jdevlibs.faces.download.ZipDownload;
+import io.github.jdevlibs.faces.session.SessionDataset;
+import io.github.jdevlibs.faces.session.SessionFootprint;
+
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLEncoder;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.channels.WritableByteChannel;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.*;
 
 /**
@@ -48,22 +64,21 @@ import java.util.*;
 public final class FacesUtils {
 	private static final int DEF_FILE_BUFFER_SIZE 	= 10240;
 	private static final String FILE_ENCODE 		= "UTF-8";
-	private static final String USER_AGENT 			= "user-agent";
+	static final String USER_AGENT 					= "user-agent";
 	private static final String CONTENT_DISP 		= "Content-Disposition";
-	private static final String SLASH 				= "/";
-	private static final String FACE_REDIRECT		= "faces-redirect=true";
-	private static final String FIREFOX 			= "Firefox";
-	private static final String CHROME				= "Chrome";
-	private static final String SAFARI 				= "Safari";
-	private static final String MS_EDGE 			= "Edge";
+	private static final String ACCEPT_LANGUAGE 	= "Accept-Language";
+	private static final String FACE_REDIRECT_QUERY = "?faces-redirect=true";
+	private static final String FACE_REDIRECT_PARAM = "&faces-redirect=true";
 	private static final String DOWNLOAD_COOKIE 	= "primefaces.download";
+	private static final String ACCEPT_ENCODING 	= "Accept-Encoding";
+	private static final String CONTENT_ENCODING 	= "Content-Encoding";
+	private static final String RANGE 				= "Range";
 	
 	private FacesUtils() {
 	}
 
 	public static boolean isLangThai() {
-		return "th".equalsIgnoreCase(getLanguage()) 
-				|| "th_TH".equalsIgnoreCase(getLanguage());
+		return RequestSnapshot.current().isLangThai();
 	}
 
 	public static boolean isLangEng() {
@@ -151,7 +166,16 @@ public final class FacesUtils {
         return getExternalContext().getSessionMap();
     }
 
+    /**
+     * Add the session attribute, the value is sized by {@link SessionFootprint} when the profiler or the budget is enabled
+     * @param key The attribute key
+     * @param value The attribute value
+     * @throws IllegalStateException When the session budget is exceeded with REJECT policy
+     */
     public static void addSession(String key, Object value) {
+    	if (SessionFootprint.isEnabled()) {
+    		SessionFootprint.onAdd(getSession(), key, value);
+    	}
     	getSessionMap().put(key, value);
     }
     
@@ -159,6 +183,40 @@ public final class FacesUtils {
 	public static <T> T getSessionValue(String key) {
 		return (T) getSessionMap().get(key);
 	}
+
+	/**
+	 * Keep large rows (search results) in a temp file, only the small handle is added to the session.
+	 * The previous dataset of the key is deleted when replaced, all datasets are deleted when the session end.
+	 * @param key The session key
+	 * @param rows The rows, each row must be serializable
+	 * @return The dataset handle, read the rows by page
+	 * @throws IOException When I/O error or a row is not serializable
+	 */
+	public static <T> SessionDataset<T> addSessionDataset(String key, Iterable<? extends T> rows) throws IOException {
+		SessionDataset<T> dataset = SessionDataset.create(rows);
+		try {
+			addSession(key, dataset);
+		} catch (RuntimeException ex) {
+			dataset.close();
+			throw ex;
+		}
+		return dataset;
+	}
+
+	/**
+	 * @param key The session key
+	 * @return The dataset, null when not found or not available on this node
+	 */
+	public static <T> SessionDataset<T> getSessionDataset(String key) {
+		Object value = getSessionMap().get(key);
+		if (!(value instanceof SessionDataset)) {
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		SessionDataset<T> dataset = (SessionDataset<T>) value;
+		return (dataset.isAvailable() ? dataset : null);
+	}
 	
 	@SuppressWarnings("unchecked")
 	public static <T> T getAttributes(UIComponent comp, String name) {
@@ -172,6 +230,10 @@ public final class FacesUtils {
 	public static void removeSession(String key) {
 		try {
 			getSessionMap().remove(key);
+			if (SessionFootprint.isEnabled()) {
+				// Must not create a session on session-less requests
+				SessionFootprint.onRemove((HttpSession) getExternalContext().getSession(false), key);
+			}
 		} catch (Exception ex) {
 			// Ignore exception
 		}
@@ -197,22 +259,28 @@ public final class FacesUtils {
 		resp.addCookie(cookie);
 	}
 	
+	/**
+	 * Batch cookie writer of the current response, shared attributes are formatted once
+	 * @return New cookie writer
+	 */
+	public static CookieWriter cookieWriter() {
+		return CookieWriter.of(getResponse());
+	}
+	
+	/**
+	 * @return Cookies of the current request, indexed once per request
+	 */
+	public static CookieIndex getCookieIndex() {
+		return RequestSnapshot.current().getCookies();
+	}
+	
 	public static String getCookie(String name) {
 		try {
 			if (JSFValidators.isEmpty(name)) {
 				return null;
 			}
 			
-			HttpServletRequest request = getRequest();
-			Cookie[] cookies = request.getCookies();
-			if (JSFValidators.isEmpty(cookies)) {
-				return null;
-			}
-
-			Optional<String> value = Arrays.stream(cookies)
-					.filter(c -> name.equals(c.getName()))
-					.map(Cookie::getValue).findAny();
-			return (value.orElse(null));
+			return getCookieIndex().get(name);
 		} catch (Exception ex) {
 			//Skip
 		}
@@ -221,19 +289,18 @@ public final class FacesUtils {
 	}
 	
 	public static String getContextPath() {
-		return getExternalContext().getRequestContextPath();
+		return RequestSnapshot.current().getContextPath();
 	}
 
 	public static String getRequestPath() {
 		HttpServletRequest request = getRequest();
-		StringBuilder requestURL = new StringBuilder(request.getRequestURL().toString());
+		StringBuffer requestURL = request.getRequestURL();
 		String queryString = request.getQueryString();
 
-		if (queryString == null) {
-			return requestURL.toString();
-		} else {
-			return requestURL.append('?').append(queryString).toString();
+		if (queryString != null) {
+			requestURL.append('?').append(queryString);
 		}
+		return requestURL.toString();
 	}
 	
 	public static String getRequestUrl() {
@@ -241,25 +308,29 @@ public final class FacesUtils {
 		return getFullUrl(request);
 	}
 	
+	/**
+	 * @return Supported locales of the application, a new list the caller may change
+	 */
 	public static List<Locale> getSupportedLocales() {
-		Iterator<Locale> its = getApplication().getSupportedLocales();
-		if (JSFValidators.isEmpty(its)) {
-			return new ArrayList<>(0);
-		}
-
-		List<Locale> locales = new ArrayList<>();
-		while (its.hasNext()) {
-			locales.add(its.next());
-		}
+		return new ArrayList<>(LocaleRegistry.current().getSupportedLocales());
+	}
 
-		return locales;
+	/**
+	 * @return Best supported locale of the request Accept-Language header, the default locale when nothing match
+	 */
+	public static Locale getPreferredLocale() {
+		String acceptLanguage = getExternalContext().getRequestHeaderMap().get(ACCEPT_LANGUAGE);
+		return LocaleRegistry.current().negotiate(acceptLanguage);
 	}
 
+	/**
+	 * @param locale The locale, Ex. th, th_TH or th-TH
+	 */
 	public static void setLocale(String locale) {
 		if (JSFValidators.isEmpty(locale)) {
 			return;
 		}
-		setLocale(new Locale(locale));
+		setLocale(LocaleRegistry.current().toLocale(locale));
 	}
 	
 	public static void setLocale(Locale locale) {
@@ -267,7 +338,9 @@ public final class FacesUtils {
 			return;
 		}
 		
-		getContext().getViewRoot().setLocale(locale);
+		FacesContext context = getContext();
+		context.getViewRoot().setLocale(locale);
+		RequestSnapshot.get(context).invalidateLocale();
 	}
 
 	public static Locale getLocale() {
@@ -321,14 +394,8 @@ public final class FacesUtils {
 			return;
 		}
 
-		String url = getContextPath();
-		if (page.indexOf(SLASH) != 0) {
-			url += SLASH + page;
-		} else {
-			url += page;
-		}
 		try {
-			getExternalContext().redirect(url);
+			getExternalContext().redirect(concatPath(page));
 		} catch (IOException ex) {
 			//Skip
 		}
@@ -346,11 +413,7 @@ public final class FacesUtils {
             return null;
         }
 
-        if (outcome.indexOf('?') >= 1) {
-            return outcome + "&" + FACE_REDIRECT;
-        } else {
-            return outcome + "?" + FACE_REDIRECT;
-        }
+        return outcome.concat(outcome.indexOf('?') >= 1 ? FACE_REDIRECT_PARAM : FACE_REDIRECT_QUERY);
     }
 
 	public static String concatPath(String path){
@@ -358,14 +421,7 @@ public final class FacesUtils {
 			return path;
 		}
 
-		String url = getContextPath();
-		if (path.indexOf(SLASH) != 0) {
-			url += SLASH + path;
-		} else {
-			url += path;
-		}
-		
-		return url;
+		return UrlBuilder.pagePath(getContextPath(), path);
 	}
 	
     public static String getCurrentViewId() {
@@ -377,7 +433,7 @@ public final class FacesUtils {
     }
     
     public static String getUserAgent() {
-		return getRequest().getHeader(USER_AGENT);
+		return RequestSnapshot.current().getUserAgent();
     }
     
 	public static void responseComplete() {
@@ -413,31 +469,23 @@ public final class FacesUtils {
 		return getContext().isProjectStage(ProjectStage.Production);
 	}
 
+	/**
+	 * @return Parsed User-Agent of the current request (browser family, version, engine, mobile)
+	 */
+	public static UserAgentInfo getUserAgentInfo() {
+		return RequestSnapshot.current().getUserAgentInfo();
+	}
+	
 	public static boolean isBrowserFirefox() {
-		String userAgent = getUserAgent();
-		if (JSFValidators.isEmpty(userAgent)) {
-			return false;
-		}
-
-		return userAgent.contains(FIREFOX);
+		return RequestSnapshot.current().isBrowserFirefox();
 	}
     
 	public static boolean isBrowserChrome() {
-		String userAgent = getUserAgent();
-		if (JSFValidators.isEmpty(userAgent)) {
-			return false;
-		}
-
-		return (userAgent.contains(CHROME) && !userAgent.contains(MS_EDGE));
+		return RequestSnapshot.current().isBrowserChrome();
 	}
 	
 	public static boolean isBrowserMsEdge() {
-		String userAgent = getUserAgent();
-		if (JSFValidators.isEmpty(userAgent)) {
-			return false;
-		}
-
-		return (userAgent.contains(SAFARI) && userAgent.contains(MS_EDGE));
+		return RequestSnapshot.current().isBrowserMsEdge();
 	}
 	
 	public static void validationFailed() {
@@ -535,29 +583,32 @@ public final class FacesUtils {
 	}
 	
 	public static String encodeURL(String string) {
-		if (string == null) {
-			return null;
-		}
-
-		try {
-			return URLEncoder.encode(string, FILE_ENCODE);
-		} catch (UnsupportedEncodingException e) {
-			return null;
-		}
+		return UrlBuilder.encode(string);
 	}
 	
 	public static void setMonitorDownloadResponse(String fileName) {
 		setMonitorDownloadResponse(fileName, true);
 	}
 	
+	/**
+	 * Set download response headers, the caller then write the body to {@link #getResponse()} output stream.
+	 * When download metrics are enabled the returned response of {@link #getResponse()} is measured.
+	 * @param fileName The download file name
+	 * @param attachment true for attachment, false for inline
+	 */
 	public static void setMonitorDownloadResponse(String fileName, boolean attachment) {
 		ExternalContext ctx = getExternalContext();
 		HttpServletRequest req = getRequest();
 
+		DownloadTracker tracker = DownloadTracker.start(req, JSFMimeTypes.getMimeType(fileName));
 		setFileResponseHeader(ctx, fileName, attachment);
 		if (req.isSecure()) {
 			setSecureResponseHeader(ctx);
 		}
+		if (tracker != null) {
+			tracker.headersWritten();
+			ctx.setResponse(DownloadTracker.monitor(req, getResponse()));
+		}
 		
 		getExternalContext().setResponseStatus(200);
 		getContext().responseComplete();
@@ -568,93 +619,274 @@ public final class FacesUtils {
 	}
 	
 	public static OutputStream createFileOutputStream(String fileName, boolean attachment) throws IOException {
+		return createFileOutputStream(fileName, new DownloadOption().attachment(attachment));
+	}
+	
+	/**
+	 * Set download response headers and return the response output stream.
+	 * When compression is enabled and accepted, the returned stream is gzip and must be closed.
+	 * @param fileName The download file name
+	 * @param option The download option
+	 * @return The response output stream
+	 * @throws IOException When I/O error
+	 */
+	public static OutputStream createFileOutputStream(String fileName, DownloadOption option) throws IOException {
 
 		ExternalContext ctx = getExternalContext();
 		HttpServletRequest req = getRequest();
 		
-		setFileResponseHeader(ctx, fileName, attachment);
+		DownloadTracker tracker = DownloadTracker.start(req, JSFMimeTypes.getMimeType(fileName),
+				option.getProgressId());
+		setFileResponseHeader(ctx, fileName, option.isAttachment());
 		if (req.isSecure()) {
 			setSecureResponseHeader(ctx);
 		}
+		if (tracker != null) {
+			tracker.headersWritten();
+		}
 
-		return ctx.getResponseOutputStream();
+		// Measured stream, the download is reported when the stream is closed
+		OutputStream output = DownloadTracker.output(req, getResponse());
+		if (option.isCompress() && JSFMimeTypes.isCompressible(fileName)) {
+			ContentEncodings.addVary(getResponse());
+			if (ContentEncodings.accepts(req.getHeader(ACCEPT_ENCODING), ContentEncodings.GZIP)) {
+				ctx.setResponseHeader(CONTENT_ENCODING, ContentEncodings.GZIP);
+				return ContentEncodings.gzip(output, -1);
+			}
+		}
+		
+		return output;
+	}
+	
+	/**
+	 * Stream ZIP archive entries straight to the response
+	 * @param zip The archive entries
+	 * @throws IOException When I/O error
+	 */
+	public static void downloadZip(ZipDownload zip) throws IOException {
+		OutputStream output = createFileOutputStream(zip.getFileName(), zip.isAttachment());
+		try {
+			zip.writeTo(output);
+		} finally {
+			close(output);
+		}
+		
+		getContext().responseComplete();
 	}
 	
 	public static void downloadFile(File file) throws IOException {
-		downloadFile(new FileInputStream(file), file.getName(), file.length(), true);
+		downloadFile(file, file.getName(), new DownloadOption());
 	}
 	
 	public static void downloadFile(File file, String outputName) throws IOException {
-		downloadFile(new FileInputStream(file), outputName, file.length(), true);
+		downloadFile(file, outputName, new DownloadOption());
 	}
 	
 	public static void downloadFile(File file, boolean attachment) throws IOException {
-		downloadFile(new FileInputStream(file), file.getName(), file.length(), attachment);
+		downloadFile(file, file.getName(), new DownloadOption().attachment(attachment));
+	}
+
+	public static void downloadFile(File file, DownloadOption option) throws IOException {
+		downloadFile(file, file.getName(), option);
+	}
+
+	public static void downloadFile(File file, String outputName, DownloadOption option) throws IOException {
+		if (option.isPrecompressed() && option.getDigest() == null && JSFMimeTypes.isCompressible(outputName)) {
+			downloadPrecompressed(file, outputName, option);
+			return;
+		}
+		downloadResource(new FileResource(file), outputName, option);
 	}
 
 	public static void downloadFile(byte[] content, String filename) throws IOException {
-		downloadFile(new ByteArrayInputStream(content), filename, content.length, true);
+		downloadFile(content, filename, new DownloadOption());
 	}
 
 	public static void downloadFile(byte[] content, String filename, boolean attachment)
 			throws IOException {
-		downloadFile(new ByteArrayInputStream(content), filename, content.length, attachment);
+		downloadFile(content, filename, new DownloadOption().attachment(attachment));
+	}
+
+	public static void downloadFile(byte[] content, String filename, DownloadOption option)
+			throws IOException {
+		downloadResource(new ByteArrayResource(content), filename, option);
 	}
 
 	public static void downloadFile(InputStream content, String filename)
 			throws IOException {
-		downloadFile(content, filename, -1, true);
+		downloadFile(content, filename, new DownloadOption());
 	}
 	
 	public static void downloadFile(InputStream content, String filename, boolean attachment)
 			throws IOException {
-		downloadFile(content, filename, -1, attachment);
+		downloadFile(content, filename, new DownloadOption().attachment(attachment));
+	}
+	
+	/**
+	 * Download unknown length content. CHUNKED mode stream the content as it is read,
+	 * BUFFERED mode read the content first (memory then temp file) to send the exact Content-Length.
+	 * @param content The content, closed after download
+	 * @param filename The download file name
+	 * @param option The download option
+	 * @throws IOException When I/O error
+	 */
+	public static void downloadFile(InputStream content, String filename, DownloadOption option)
+			throws IOException {
+		if (option.getStreamMode() != StreamMode.BUFFERED) {
+			downloadStream(content, filename, option);
+			return;
+		}
+		
+		SpillBuffer spill = new SpillBuffer(option.getMemoryThreshold());
+		DownloadResource resource;
+		try {
+			if (option.getDigest() == null) {
+				stream(content, spill, -1, option, null);
+				resource = spill.toResource();
+			} else {
+				// Digest while buffering, the header is then sent before the body
+				MessageDigest digest = Digests.create(option.getDigest());
+				stream(content, new DigestOutputStream(spill, digest), -1, option, null);
+				resource = spill.toResource(digest);
+			}
+		} catch (IOException | RuntimeException ex) {
+			spill.discard();
+			throw ex;
+		}
+		downloadResource(resource, filename, option);
+	}
+	
+	/**
+	 * Download content with a known length, with Range, conditional request and async support
+	 * @param resource The content, closed after download
+	 * @param filename The download file name
+	 * @param option The download option
+	 * @throws IOException When I/O error
+	 */
+	public static void downloadFile(DownloadResource resource, String filename, DownloadOption option)
+			throws IOException {
+		downloadResource(resource, filename, option);
 	}
 	
-	private static void downloadFile(InputStream input, String filename, long contentLength,
-			boolean attachment) throws IOException {
+	private static void downloadPrecompressed(File file, String filename, DownloadOption option)
+			throws IOException {
 		
-		ExternalContext ctx = getExternalContext();
 		HttpServletRequest req = getRequest();
+		ContentEncodings.addVary(getResponse());
 		
-		setFileResponseHeader(ctx, filename, attachment);
-		if (req.isSecure()) {
-			setSecureResponseHeader(ctx);
+		// Range applies to the identity content, resumed downloads are sent uncompressed
+		File sibling = null;
+		if (req.getHeader(RANGE) == null) {
+			sibling = PrecompressedFiles.select(file, req.getHeader(ACCEPT_ENCODING));
+		}
+		if (sibling == null) {
+			PrecompressedFiles.schedule(file);
+			downloadResource(new FileResource(file), filename, option);
+			return;
 		}
 		
-		if (contentLength != -1) {
-			ctx.setResponseHeader("Content-Length", String.valueOf(contentLength));
-		}
+		getResponse().setHeader(CONTENT_ENCODING, PrecompressedFiles.codingOf(sibling));
+		downloadResource(new FileResource(sibling), filename, option);
+	}
+	
+	private static void downloadStream(InputStream input, String filename, DownloadOption option)
+			throws IOException {
 		
-		long fileSize = stream(input, ctx.getResponseOutputStream());
+		OutputStream output;
+		try {
+			output = createFileOutputStream(filename, option);
+		} catch (IOException | RuntimeException ex) {
+			close(input);
+			throw ex;
+		}
 		
-		// This may be on time for files smaller than the default buffer size
-		if (contentLength == -1) {
-			ctx.setResponseHeader("Content-Length", String.valueOf(fileSize));
+		StreamDigest digest = StreamDigest.of(option);
+		if (digest != null) {
+			// Length is unknown, the digest can only be sent as trailer of identity content
+			if (getResponse().getHeader(CONTENT_ENCODING) == null) {
+				digest.trailer(getRequest(), getResponse(), true);
+			}
+			output = digest.wrap(output);
 		}
 		
 		getExternalContext().setResponseStatus(200);
+		stream(input, output, -1, option, digest);
 		getContext().responseComplete();
 	}
 	
-	private static long stream(InputStream input, OutputStream output) throws IOException {
-		ReadableByteChannel inputChannel = null;
-		WritableByteChannel outputChannel = null;
+	private static void downloadResource(DownloadResource resource, String filename, DownloadOption option)
+			throws IOException {
+		
+		boolean async = false;
+		HttpServletRequest req = getRequest();
+		DownloadTracker tracker = DownloadTracker.start(req, JSFMimeTypes.getMimeType(filename),
+				option.getProgressId());
 		try {
-			inputChannel = Channels.newChannel(input);
-			outputChannel = Channels.newChannel(output);
-			ByteBuffer buffer = ByteBuffer.allocateDirect(DEF_FILE_BUFFER_SIZE);
+			ExternalContext ctx = getExternalContext();
+			
+			setFileResponseHeader(ctx, filename, option.isAttachment());
+			if (req.isSecure()) {
+				setSecureResponseHeader(ctx);
+			}
+			if (tracker != null) {
+				tracker.headersWritten();
+			}
+			
+			async = DownloadHandler.write(req, getResponse(), resource, option);
+			getContext().responseComplete();
+		} catch (IOException | RuntimeException ex) {
+			if (tracker != null) {
+				tracker.fail(ex);
+			}
+			throw ex;
+		} finally {
+			// Async writer close the resource and report the download when completed
+			if (!async) {
+				close(resource);
+				if (tracker != null) {
+					tracker.finish(getResponse());
+				}
+			}
+		}
+	}
+	
+	private static long stream(InputStream input, OutputStream output, long contentLength, DownloadOption option,
+			StreamDigest digest) throws IOException {
+		try {
+			long size = (option.getReadAhead() > 0
+					? ReadAheadStreamer.stream(input, output, contentLength, option.getReadAhead())
+					: copy(input, output, contentLength));
+			if (digest != null) {
+				// Input fully read, before the output is closed
+				digest.finish();
+			}
+			return size;
+		} catch (IOException | RuntimeException ex) {
+			DownloadTracker tracker = DownloadTracker.get(getRequest());
+			if (tracker != null) {
+				tracker.fail(ex);
+			}
+			throw ex;
+		} finally {
+			close(output);
+			close(input);
+		}
+	}
+	
+	private static long copy(InputStream input, OutputStream output, long contentLength) throws IOException {
+		ByteBuffer buffer = BufferPool.heap().acquire(BufferPool.sizeFor(contentLength));
+		try {
+			byte[] bytes = buffer.array();
 			long size = 0;
-			while (inputChannel.read(buffer) != -1) {
-				buffer.flip();
-				size += outputChannel.write(buffer);
-				buffer.clear();
+			int read;
+			while ((read = input.read(bytes, 0, bytes.length)) != -1) {
+				output.write(bytes, 0, read);
+				size += read;
 			}
-
+			
 			return size;
 		} finally {
-			close(outputChannel);
-			close(inputChannel);
+			BufferPool.heap().release(buffer);
 		}
 	}
 	
@@ -707,30 +939,22 @@ public final class FacesUtils {
 	}
 	
 	private static String getFullUrl(HttpServletRequest req) {
-
-		String scheme = req.getScheme(); // http
-		String serverName = req.getServerName(); // hostname.com
-		int serverPort = req.getServerPort(); // 80
-		String contextPath = req.getContextPath(); // /mywebapp
+		String baseUrl = RequestSnapshot.current().getBaseUrl(); // http://hostname.com:8080/mywebapp
 		String servletPath = req.getServletPath(); // /servlet/MyServlet
 		String pathInfo = req.getPathInfo(); // /a/b;c=123
 		String queryString = req.getQueryString(); // d=789
 
 		// Reconstruct the original requesting URL
-		StringBuilder url = new StringBuilder();
-		url.append(scheme).append("://").append(serverName);
-
-		if (serverPort > 0 && serverPort != 80 && serverPort != 443) {
-			url.append(":").append(serverPort);
-		}
-
-		url.append(contextPath).append(servletPath);
+		int length = baseUrl.length() + servletPath.length() + (pathInfo == null ? 0 : pathInfo.length())
+				+ (queryString == null ? 0 : queryString.length() + 1);
+		StringBuilder url = new StringBuilder(length);
+		url.append(baseUrl).append(servletPath);
 
 		if (pathInfo != null) {
 			url.append(pathInfo);
 		}
 		if (queryString != null) {
-			url.append("?").append(queryString);
+			url.append('?').append(queryString);
 		}
 		return url.toString();
 	}
@@ -18,7 +18,9 @@ package io.github.jdevlibs.faces;
 
 import java.text.MessageFormat;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Utilities class for mapping file MimeType
@@ -29,6 +31,7 @@ public final class JSFMimeTypes {
 	private static final String ATTACHMENT = "attachment; filename=\"{0}\"";
 	private static final String DEF_TYPE = "application/octet-stream";	
 	private static final Map<String, String> MAPS;
+	private static final Set<String> COMPRESSIBLES;
 	
 	static {
 		// Ref http://reference.sitepoint.com/html/mime-types-full
@@ -166,6 +169,27 @@ public final class JSFMimeTypes {
 		MAPS.put("xlw", "application/vndms-excel");
 		MAPS.put("xml", "application/xml");
 		MAPS.put("zip", "application/zip");
+
+		// Non text/* types worth to compress, archives, office open xml, media and pdf are already compressed
+		COMPRESSIBLES = new HashSet<>();
+		COMPRESSIBLES.add("application/atom+xml");
+		COMPRESSIBLES.add("application/json");
+		COMPRESSIBLES.add("application/msword");
+		COMPRESSIBLES.add("application/postscript");
+		COMPRESSIBLES.add("application/rls-services+xml");
+		COMPRESSIBLES.add("application/rsd+xml");
+		COMPRESSIBLES.add("application/rss+xml");
+		COMPRESSIBLES.add("application/rtf");
+		COMPRESSIBLES.add("application/vndms-excel");
+		COMPRESSIBLES.add("application/vndms-powerpoint");
+		COMPRESSIBLES.add("application/x-javascript");
+		COMPRESSIBLES.add("application/x-latex");
+		COMPRESSIBLES.add("application/x-tex");
+		COMPRESSIBLES.add("application/xhtml+xml");
+		COMPRESSIBLES.add("application/xml");
+		COMPRESSIBLES.add("image/bmp");
+		COMPRESSIBLES.add("image/svg+xml");
+		COMPRESSIBLES.add("message/rfc822");
 	}
 	
 	private JSFMimeTypes(){}
@@ -179,6 +203,36 @@ public final class JSFMimeTypes {
 		return contentType;
 	}
 	
+	/**
+	 * Check the file type is worth to compress (text, json, xml, ...)
+	 * @param fileName The file name
+	 * @return true when the file type is compressible
+	 */
+	public static boolean isCompressible(final String fileName) {
+		String contentType = MAPS.get(getExtension(fileName));
+		return contentType != null && isCompressibleType(contentType);
+	}
+
+	/**
+	 * Check the content type is worth to compress
+	 * @param contentType The content type, parameters are ignored. Ex. text/csv;charset=UTF-8
+	 * @return true when the content type is compressible
+	 */
+	public static boolean isCompressibleType(final String contentType) {
+		if (JSFValidators.isEmpty(contentType)) {
+			return false;
+		}
+
+		String type = contentType;
+		int index = type.indexOf(';');
+		if (index != -1) {
+			type = type.substring(0, index);
+		}
+		type = type.trim().toLowerCase();
+
+		return type.startsWith("text/") || COMPRESSIBLES.contains(type);
+	}
+	
 	public static String getAttachment(final String fileName) {
 		return MessageFormat.format(ATTACHMENT, fileName);
 	}
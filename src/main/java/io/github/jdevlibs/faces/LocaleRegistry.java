@@ -0,0 +1,205 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces;
+
+import io.github.jdevlibs.utils.LruCache;
+import jakarta.faces.application.Application;
+import jakarta.faces.context.FacesContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Supported locales of the application (faces-config locale-config), built once and kept in the application map.
+ * <ul>
+ * <li>{@link #toLocale(String)} returns canonical Locale instances, the same instance for the same value</li>
+ * <li>{@link #negotiate(String)} matches the Accept-Language header with the supported locales,
+ * results are cached by the header value</li>
+ * </ul>
+ * Call {@link #refresh(FacesContext)} after the locale-config is changed at runtime.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class LocaleRegistry {
+	private static final String KEY = LocaleRegistry.class.getName();
+	private static final int MAX_CACHED_LENGTH = 256;
+	private static final LruCache<String, Locale> INTERNED = new LruCache<>(512);
+
+	private final Locale defaultLocale;
+	private final List<Locale> supportedLocales;
+	// Default + supported, by language tag and by language
+	private final Map<String, Locale> byTag;
+	private final Map<String, Locale> byLanguage;
+	private final LruCache<String, Locale> negotiated = new LruCache<>(
+			Integer.getInteger("faces.locale.cache", 1024));
+
+	private LocaleRegistry(Locale defaultLocale, List<Locale> supportedLocales) {
+		this.defaultLocale = defaultLocale;
+		this.supportedLocales = Collections.unmodifiableList(supportedLocales);
+		this.byTag = new HashMap<>();
+		this.byLanguage = new HashMap<>();
+
+		List<Locale> candidates = new ArrayList<>(supportedLocales.size() + 1);
+		candidates.add(defaultLocale);
+		candidates.addAll(supportedLocales);
+		for (Locale locale : candidates) {
+			byTag.putIfAbsent(locale.toLanguageTag().toLowerCase(Locale.ROOT), locale);
+			byLanguage.putIfAbsent(locale.getLanguage(), locale);
+		}
+	}
+
+	/**
+	 * @param context The current faces context
+	 * @return The registry of the application
+	 */
+	public static LocaleRegistry get(FacesContext context) {
+		Map<String, Object> attributes = context.getExternalContext().getApplicationMap();
+		LocaleRegistry registry = (LocaleRegistry) attributes.get(KEY);
+		if (registry == null) {
+			// Same result when built twice by concurrent requests
+			registry = create(context.getApplication());
+			attributes.put(KEY, registry);
+		}
+		return registry;
+	}
+
+	public static LocaleRegistry current() {
+		return get(FacesContext.getCurrentInstance());
+	}
+
+	/**
+	 * Rebuild the registry from the application locale-config
+	 * @param context The current faces context
+	 * @return The new registry
+	 */
+	public static LocaleRegistry refresh(FacesContext context) {
+		LocaleRegistry registry = create(context.getApplication());
+		context.getExternalContext().getApplicationMap().put(KEY, registry);
+		return registry;
+	}
+
+	/**
+	 * @return Supported locales (unmodifiable), without the default locale unless it is also listed as supported
+	 */
+	public List<Locale> getSupportedLocales() {
+		return supportedLocales;
+	}
+
+	public Locale getDefaultLocale() {
+		return defaultLocale;
+	}
+
+	public boolean isSupported(Locale locale) {
+		return locale != null && byTag.containsKey(locale.toLanguageTag().toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Canonical locale of the value, the supported locale instance when it is supported
+	 * @param value The locale, Ex. th, th_TH or th-TH
+	 * @return The locale, null when the value is empty
+	 */
+	public Locale toLocale(String value) {
+		if (JSFValidators.isEmpty(value)) {
+			return null;
+		}
+
+		Locale locale = intern(value);
+		Locale supported = byTag.get(locale.toLanguageTag().toLowerCase(Locale.ROOT));
+		return (supported != null && supported.equals(locale) ? supported : locale);
+	}
+
+	/**
+	 * Best supported locale of the Accept-Language header, language-country match first then language match
+	 * @param acceptLanguage The Accept-Language header value, Ex. th-TH,th;q=0.9,en;q=0.8
+	 * @return The matched supported locale, the default locale when nothing match
+	 */
+	public Locale negotiate(String acceptLanguage) {
+		if (JSFValidators.isEmpty(acceptLanguage)) {
+			return defaultLocale;
+		}
+
+		// Abnormally long values are not cached, the cache must not be filled by crafted headers
+		if (acceptLanguage.length() > MAX_CACHED_LENGTH) {
+			return doNegotiate(acceptLanguage);
+		}
+		return negotiated.computeIfAbsent(acceptLanguage, this::doNegotiate);
+	}
+
+	/**
+	 * Canonical Locale instance of the value
+	 * @param value The locale, Ex. th, th_TH or th-TH
+	 * @return The shared locale instance
+	 */
+	public static Locale intern(String value) {
+		if (value.length() > MAX_CACHED_LENGTH) {
+			return parse(value);
+		}
+		return INTERNED.computeIfAbsent(value, LocaleRegistry::parse);
+	}
+
+	private Locale doNegotiate(String acceptLanguage) {
+		List<Locale.LanguageRange> ranges;
+		try {
+			ranges = Locale.LanguageRange.parse(acceptLanguage);
+		} catch (IllegalArgumentException ex) {
+			return defaultLocale;
+		}
+
+		// Ranges are sorted by weight, q=0 are excluded
+		for (Locale.LanguageRange range : ranges) {
+			String tag = range.getRange();
+			if ("*".equals(tag)) {
+				return defaultLocale;
+			}
+
+			Locale locale = byTag.get(tag);
+			if (locale == null) {
+				int index = tag.indexOf('-');
+				locale = byLanguage.get(index > 0 ? tag.substring(0, index) : tag);
+			}
+			if (locale != null) {
+				return locale;
+			}
+		}
+		return defaultLocale;
+	}
+
+	private static Locale parse(String value) {
+		Locale locale = Locale.forLanguageTag(value.trim().replace('_', '-'));
+		return (locale.getLanguage().isEmpty() ? new Locale(value) : locale);
+	}
+
+	private static LocaleRegistry create(Application application) {
+		Locale defaultLocale = application.getDefaultLocale();
+		if (defaultLocale == null) {
+			defaultLocale = Locale.getDefault();
+		}
+
+		List<Locale> locales = new ArrayList<>();
+		Iterator<Locale> its = application.getSupportedLocales();
+		while (its != null && its.hasNext()) {
+			locales.add(its.next());
+		}
+		return new LocaleRegistry(defaultLocale, locales);
+	}
+}
@@ -0,0 +1,152 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces;
+
+import jakarta.faces.context.FacesContext;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Values derived from the current request (Thai language, user agent, context path, base URL, browser, cookies),
+ * computed once on first use and kept with the {@link FacesContext} until the request ends.
+ * The locale itself is not kept, read it from the view root.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class RequestSnapshot {
+	private static final String KEY = RequestSnapshot.class.getName();
+
+	private final FacesContext context;
+	private Locale langLocale;
+	private boolean langThai;
+	private boolean userAgentLoaded;
+	private String userAgent;
+	private String contextPath;
+	private String baseUrl;
+	private UserAgentInfo userAgentInfo;
+	private CookieIndex cookies;
+
+	private RequestSnapshot(FacesContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * @param context The current faces context
+	 * @return Snapshot of the current request
+	 */
+	public static RequestSnapshot get(FacesContext context) {
+		// FacesContext attributes have the request lifetime without the request map wrapper lookup
+		Map<Object, Object> attributes = context.getAttributes();
+		RequestSnapshot snapshot = (RequestSnapshot) attributes.get(KEY);
+		if (snapshot == null) {
+			snapshot = new RequestSnapshot(context);
+			attributes.put(KEY, snapshot);
+		}
+		return snapshot;
+	}
+
+	public static RequestSnapshot current() {
+		return get(FacesContext.getCurrentInstance());
+	}
+
+	public boolean isLangThai() {
+		// The view root locale may change during the request, only the derived value is kept
+		Locale current = context.getViewRoot().getLocale();
+		if (current != langLocale) {
+			String language = current.getLanguage();
+			langThai = "th".equalsIgnoreCase(language) || "th_TH".equalsIgnoreCase(language);
+			langLocale = current;
+		}
+		return langThai;
+	}
+
+	public String getUserAgent() {
+		if (!userAgentLoaded) {
+			userAgent = getRequest().getHeader(FacesUtils.USER_AGENT);
+			userAgentLoaded = true;
+		}
+		return userAgent;
+	}
+
+	public String getContextPath() {
+		if (contextPath == null) {
+			contextPath = context.getExternalContext().getRequestContextPath();
+		}
+		return contextPath;
+	}
+
+	/**
+	 * @return Scheme, host, port (when not 80 or 443) and context path, Ex. https://hostname.com/mywebapp
+	 */
+	public String getBaseUrl() {
+		if (baseUrl == null) {
+			HttpServletRequest request = getRequest();
+			String scheme = request.getScheme();
+			String serverName = request.getServerName();
+			int serverPort = request.getServerPort();
+			String path = getContextPath();
+
+			StringBuilder url = new StringBuilder(scheme.length() + serverName.length() + path.length() + 9);
+			url.append(scheme).append("://").append(serverName);
+			if (serverPort > 0 && serverPort != 80 && serverPort != 443) {
+				url.append(':').append(serverPort);
+			}
+			baseUrl = url.append(path).toString();
+		}
+		return baseUrl;
+	}
+
+	public UserAgentInfo getUserAgentInfo() {
+		if (userAgentInfo == null) {
+			userAgentInfo = UserAgentParser.parse(getUserAgent());
+		}
+		return userAgentInfo;
+	}
+
+	public boolean isBrowserFirefox() {
+		return getUserAgentInfo().isFirefox();
+	}
+
+	public boolean isBrowserChrome() {
+		return getUserAgentInfo().isChrome();
+	}
+
+	public boolean isBrowserMsEdge() {
+		return getUserAgentInfo().isEdge();
+	}
+
+	public CookieIndex getCookies() {
+		if (cookies == null) {
+			cookies = CookieIndex.of(getRequest().getCookies());
+		}
+		return cookies;
+	}
+
+	/**
+	 * Reset the locale derived values, called when the view locale is changed
+	 */
+	public void invalidateLocale() {
+		langLocale = null;
+	}
+
+	private HttpServletRequest getRequest() {
+		return (HttpServletRequest) context.getExternalContext().getRequest();
+	}
+}
@@ -0,0 +1,288 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Reusable URL builder for links and redirects of the application.
+ * The context path and the server prefix come from {@link RequestSnapshot} (resolved once per request),
+ * query parameters are form-encoded (same as {@link java.net.URLEncoder} UTF-8) directly into the builder
+ * and parameter names can be encoded once with {@link #key(String)}.
+ * <pre>
+ * private static final UrlBuilder.Key ID = UrlBuilder.key("id");
+ *
+ * UrlBuilder builder = UrlBuilder.create();
+ * for (Order order : orders) {
+ *     links.add(builder.page("/order/view.xhtml").param(ID, order.getId()).build());
+ * }
+ * </pre>
+ * The builder is not thread-safe, each {@link #page(String)}, {@link #absolutePage(String)} and {@link #url(String)} start a new URL.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class UrlBuilder {
+	private static final char SLASH 		= '/';
+	private static final char[] HEX 		= "0123456789ABCDEF".toCharArray();
+	private static final Key FACES_REDIRECT = key("faces-redirect");
+
+	private final StringBuilder url;
+	private boolean query;
+
+	private UrlBuilder(int capacity) {
+		this.url = new StringBuilder(capacity);
+	}
+
+	public static UrlBuilder create() {
+		return new UrlBuilder(128);
+	}
+
+	/**
+	 * Pre-encoded parameter name, for constants
+	 * @param name The parameter name
+	 * @return The encoded key
+	 */
+	public static Key key(String name) {
+		return new Key(encode(name));
+	}
+
+	/**
+	 * Start the page URL of the application (context path + path)
+	 * @param path The page path, Ex. /order/view.xhtml
+	 * @return This builder
+	 */
+	public UrlBuilder page(String path) {
+		reset();
+		appendPage(url, RequestSnapshot.current().getContextPath(), path);
+		return this;
+	}
+
+	/**
+	 * Start the absolute page URL of the application (scheme, host, port, context path + path)
+	 * @param path The page path, Ex. /order/view.xhtml
+	 * @return This builder
+	 */
+	public UrlBuilder absolutePage(String path) {
+		reset();
+		appendPage(url, RequestSnapshot.current().getBaseUrl(), path);
+		return this;
+	}
+
+	/**
+	 * Start from the URL as is (outcome, external URL), the URL may already have query parameters
+	 * @param value The URL
+	 * @return This builder
+	 */
+	public UrlBuilder url(String value) {
+		reset();
+		if (value != null) {
+			url.append(value);
+			query = value.indexOf('?') >= 0;
+		}
+		return this;
+	}
+
+	/**
+	 * Append query parameter, null value is skipped
+	 * @param key The pre-encoded name
+	 * @param value The value, encoded
+	 * @return This builder
+	 */
+	public UrlBuilder param(Key key, Object value) {
+		if (value == null) {
+			return this;
+		}
+
+		url.append(query ? '&' : '?').append(key.encoded).append('=');
+		query = true;
+		encodeTo(String.valueOf(value), 0, url);
+		return this;
+	}
+
+	public UrlBuilder param(String name, Object value) {
+		if (value == null || name == null) {
+			return this;
+		}
+
+		url.append(query ? '&' : '?');
+		encodeTo(name, 0, url);
+		url.append('=');
+		query = true;
+		encodeTo(String.valueOf(value), 0, url);
+		return this;
+	}
+
+	/**
+	 * Append faces-redirect=true (navigation outcome)
+	 * @return This builder
+	 */
+	public UrlBuilder facesRedirect() {
+		return param(FACES_REDIRECT, Boolean.TRUE);
+	}
+
+	/**
+	 * Write the URL without creating the String
+	 * @param target The target, Ex. ResponseWriter
+	 * @throws IOException When the target failed
+	 */
+	public void appendTo(Appendable target) throws IOException {
+		target.append(url);
+	}
+
+	public int length() {
+		return url.length();
+	}
+
+	public String build() {
+		return url.toString();
+	}
+
+	@Override
+	public String toString() {
+		return url.toString();
+	}
+
+	/**
+	 * Form-encode the value (UTF-8), same result as {@link java.net.URLEncoder}
+	 * @param value The value
+	 * @return Encoded value, the same instance when nothing need to be encoded
+	 */
+	public static String encode(String value) {
+		if (value == null) {
+			return null;
+		}
+
+		int index = 0;
+		while (index < value.length() && isSafe(value.charAt(index))) {
+			index++;
+		}
+		if (index == value.length()) {
+			return value;
+		}
+
+		StringBuilder buffer = new StringBuilder(value.length() + 16);
+		buffer.append(value, 0, index);
+		encodeTo(value, index, buffer);
+		return buffer.toString();
+	}
+
+	/**
+	 * Form-encode the value (UTF-8) into the target
+	 * @param value The value
+	 * @param target The target, Ex. StringBuilder or ResponseWriter
+	 * @throws IOException When the target failed
+	 */
+	public static void encode(CharSequence value, Appendable target) throws IOException {
+		if (value != null) {
+			encode(value, 0, target);
+		}
+	}
+
+	/**
+	 * Context path + path, without allocation when the context path is empty (ROOT) and the path start with slash
+	 */
+	static String pagePath(String contextPath, String path) {
+		if (path.charAt(0) == SLASH) {
+			return contextPath.isEmpty() ? path : contextPath.concat(path);
+		}
+
+		StringBuilder buffer = new StringBuilder(contextPath.length() + path.length() + 1);
+		return buffer.append(contextPath).append(SLASH).append(path).toString();
+	}
+
+	private static void appendPage(StringBuilder url, String prefix, String path) {
+		url.append(prefix);
+		if (path != null && !path.isEmpty()) {
+			if (path.charAt(0) != SLASH) {
+				url.append(SLASH);
+			}
+			url.append(path);
+		}
+	}
+
+	private static void encodeTo(CharSequence value, int start, StringBuilder target) {
+		try {
+			encode(value, start, target);
+		} catch (IOException ex) {
+			// StringBuilder does not throw
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private static void encode(CharSequence value, int start, Appendable target) throws IOException {
+		int length = value.length();
+		for (int index = start; index < length; index++) {
+			char ch = value.charAt(index);
+			if (isSafe(ch)) {
+				target.append(ch);
+			} else if (ch == ' ') {
+				target.append('+');
+			} else if (ch < 0x80) {
+				appendByte(ch, target);
+			} else if (ch < 0x800) {
+				appendByte(0xC0 | (ch >> 6), target);
+				appendByte(0x80 | (ch & 0x3F), target);
+			} else if (Character.isHighSurrogate(ch) && index + 1 < length
+					&& Character.isLowSurrogate(value.charAt(index + 1))) {
+				int code = Character.toCodePoint(ch, value.charAt(++index));
+				appendByte(0xF0 | (code >> 18), target);
+				appendByte(0x80 | ((code >> 12) & 0x3F), target);
+				appendByte(0x80 | ((code >> 6) & 0x3F), target);
+				appendByte(0x80 | (code & 0x3F), target);
+			} else if (Character.isSurrogate(ch)) {
+				// Malformed surrogate, replaced by '?' as URLEncoder
+				appendByte('?', target);
+			} else {
+				appendByte(0xE0 | (ch >> 12), target);
+				appendByte(0x80 | ((ch >> 6) & 0x3F), target);
+				appendByte(0x80 | (ch & 0x3F), target);
+			}
+		}
+	}
+
+	private static void appendByte(int value, Appendable target) throws IOException {
+		target.append('%').append(HEX[(value >> 4) & 0x0F]).append(HEX[value & 0x0F]);
+	}
+
+	private static boolean isSafe(char ch) {
+		return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')
+				|| ch == '.' || ch == '-' || ch == '*' || ch == '_';
+	}
+
+	private void reset() {
+		url.setLength(0);
+		query = false;
+	}
+
+	/**
+	 * Encoded parameter name
+	 */
+	public static final class Key {
+		private final String encoded;
+
+		private Key(String encoded) {
+			this.encoded = encoded;
+		}
+
+		@Override
+		public String toString() {
+			return encoded;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces;
+
+import java.io.Serializable;
+
+/**
+ * Parsed user agent (browser family, version, engine, mobile), immutable and shared by {@link UserAgentParser}
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class UserAgentInfo implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static final UserAgentInfo UNKNOWN = new UserAgentInfo(Family.OTHER, null, Engine.OTHER, false);
+
+	public enum Family {
+		CHROME, FIREFOX, SAFARI, EDGE, OPERA, SAMSUNG, IE, OTHER
+	}
+
+	public enum Engine {
+		BLINK, GECKO, WEBKIT, EDGE_HTML, TRIDENT, OTHER
+	}
+
+	private final Family family;
+	private final String version;
+	private final Engine engine;
+	private final boolean mobile;
+
+	UserAgentInfo(Family family, String version, Engine engine, boolean mobile) {
+		this.family = family;
+		this.version = (version == null || version.isEmpty() ? null : version);
+		this.engine = engine;
+		this.mobile = mobile;
+	}
+
+	public Family getFamily() {
+		return family;
+	}
+
+	/**
+	 * @return Browser version, Ex. 120.0.6099.109, or null when unknown
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return Major version, or -1 when unknown
+	 */
+	public int getMajorVersion() {
+		if (version == null) {
+			return -1;
+		}
+
+		int end = version.indexOf('.');
+		try {
+			return Integer.parseInt(end == -1 ? version : version.substring(0, end));
+		} catch (NumberFormatException ex) {
+			return -1;
+		}
+	}
+
+	public Engine getEngine() {
+		return engine;
+	}
+
+	public boolean isMobile() {
+		return mobile;
+	}
+
+	public boolean isFirefox() {
+		return family == Family.FIREFOX;
+	}
+
+	public boolean isChrome() {
+		return family == Family.CHROME;
+	}
+
+	public boolean isEdge() {
+		return family == Family.EDGE;
+	}
+
+	public boolean isSafari() {
+		return family == Family.SAFARI;
+	}
+
+	@Override
+	public String toString() {
+		return "UserAgentInfo [family=" + family + ", version=" + version + ", engine=" + engine
+				+ ", mobile=" + mobile + "]";
+	}
+}
@@ -0,0 +1,129 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces;
+
+import io.github.jdevlibs.faces.UserAgentInfo.Engine;
+import io.github.jdevlibs.faces.UserAgentInfo.Family;
+import io.github.jdevlibs.utils.LruCache;
+
+/**
+ * User-Agent header parser, results are cached by the raw header value
+ * (real traffic has a few thousand distinct values, parsed once then one hash lookup).
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class UserAgentParser {
+	private static final int MAX_CACHED_LENGTH = 512;
+	private static final LruCache<String, UserAgentInfo> CACHE = new LruCache<>(
+			Integer.getInteger("faces.useragent.cache", 4096));
+
+	private UserAgentParser() {
+	}
+
+	/**
+	 * @param userAgent The User-Agent header value
+	 * @return Parsed user agent, {@link UserAgentInfo#UNKNOWN} when empty
+	 */
+	public static UserAgentInfo parse(String userAgent) {
+		if (JSFValidators.isEmpty(userAgent)) {
+			return UserAgentInfo.UNKNOWN;
+		}
+
+		// Abnormally long values are not cached, the cache must not be filled by crafted headers
+		if (userAgent.length() > MAX_CACHED_LENGTH) {
+			return doParse(userAgent);
+		}
+		return CACHE.computeIfAbsent(userAgent, UserAgentParser::doParse);
+	}
+
+	public static void clearCache() {
+		CACHE.clear();
+	}
+
+	static UserAgentInfo doParse(String ua) {
+		boolean mobile = ua.contains("Mobi") || ua.contains("Android") || ua.contains("iPhone")
+				|| ua.contains("iPad");
+		boolean ios = ua.contains("iPhone") || ua.contains("iPad") || ua.contains("iPod");
+
+		// Order matters, Chromium based browsers also send Chrome/ and Safari/ tokens
+		String version;
+		if ((version = version(ua, "Edg/", "EdgA/", "EdgiOS/")) != null) {
+			return new UserAgentInfo(Family.EDGE, version, (ios ? Engine.WEBKIT : Engine.BLINK), mobile);
+		}
+		if ((version = version(ua, "Edge/")) != null) {
+			return new UserAgentInfo(Family.EDGE, version, Engine.EDGE_HTML, mobile);
+		}
+		if ((version = version(ua, "OPR/", "OPiOS/", "Opera/")) != null) {
+			return new UserAgentInfo(Family.OPERA, version, engine(ua, ios), mobile);
+		}
+		if ((version = version(ua, "SamsungBrowser/")) != null) {
+			return new UserAgentInfo(Family.SAMSUNG, version, Engine.BLINK, mobile);
+		}
+		if ((version = version(ua, "Firefox/", "FxiOS/")) != null) {
+			return new UserAgentInfo(Family.FIREFOX, version, (ios ? Engine.WEBKIT : Engine.GECKO), mobile);
+		}
+		if ((version = version(ua, "Chrome/", "CriOS/", "Chromium/")) != null) {
+			return new UserAgentInfo(Family.CHROME, version, (ios ? Engine.WEBKIT : Engine.BLINK), mobile);
+		}
+		if (ua.contains("MSIE ") || ua.contains("Trident/")) {
+			return new UserAgentInfo(Family.IE, version(ua, "MSIE ", "rv:"), Engine.TRIDENT, mobile);
+		}
+		if (ua.contains("Safari/") && (version = version(ua, "Version/")) != null) {
+			return new UserAgentInfo(Family.SAFARI, version, Engine.WEBKIT, mobile);
+		}
+
+		return new UserAgentInfo(Family.OTHER, null, engine(ua, ios), mobile);
+	}
+
+	private static Engine engine(String ua, boolean ios) {
+		if (ua.contains("AppleWebKit")) {
+			return (ua.contains("Chrome/") && !ios ? Engine.BLINK : Engine.WEBKIT);
+		}
+		if (ua.contains("Gecko/")) {
+			return Engine.GECKO;
+		}
+		if (ua.contains("Trident/")) {
+			return Engine.TRIDENT;
+		}
+		return Engine.OTHER;
+	}
+
+	/**
+	 * Version following the first found token, Ex. Chrome/120.0.1 return 120.0.1
+	 */
+	private static String version(String ua, String... tokens) {
+		for (String token : tokens) {
+			int index = ua.indexOf(token);
+			if (index == -1) {
+				continue;
+			}
+
+			int start = index + token.length();
+			int end = start;
+			while (end < ua.length() && isVersionChar(ua.charAt(end))) {
+				end++;
+			}
+			return (end > start ? ua.substring(start, end) : "");
+		}
+		return null;
+	}
+
+	private static boolean isVersionChar(char ch) {
+		return (ch >= '0' && ch <= '9') || ch == '.';
+	}
+}
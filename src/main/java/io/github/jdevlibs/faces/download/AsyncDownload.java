@@ -0,0 +1,257 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking download, release the request thread and write only when the socket is writable.
+ * The servlet (FacesServlet) must be configured with <code>async-supported</code>.
+ * The resource is owned by this writer and closed when the download is completed or failed.
+ * There is no limit on the total download time, the download is aborted when the client does not accept
+ * any byte for <code>faces.download.async.idleTimeout</code> milliseconds (default 5 minutes).
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class AsyncDownload implements WriteListener, AsyncListener {
+	// Slow clients are expected, only a stalled client is aborted
+	private static final long IDLE_TIMEOUT 	= Long.getLong("faces.download.async.idleTimeout", 5 * 60 * 1000L);
+	private static final long CHECK_PERIOD 	= Math.max(1000L, IDLE_TIMEOUT / 4);
+	private static final ScheduledThreadPoolExecutor WATCHDOG = createWatchdog();
+
+	private final AsyncContext asyncContext;
+	private final ServletOutputStream output;
+	private final DownloadResource resource;
+	private final long end;
+	private final ByteBuffer buffer;
+	private final ChunkOutputStream chunk;
+	private final AtomicBoolean released = new AtomicBoolean();
+	private final DownloadTracker tracker;
+	private volatile long lastWrite = System.currentTimeMillis();
+	private volatile ScheduledFuture<?> idleCheck;
+	private long position;
+
+	private AsyncDownload(AsyncContext asyncContext, DownloadResource resource, long position, long count)
+			throws IOException {
+		this.asyncContext = asyncContext;
+		this.output = asyncContext.getResponse().getOutputStream();
+		this.resource = resource;
+		this.position = position;
+		this.end = position + count;
+		this.buffer = BufferPool.heap().acquire(BufferPool.sizeFor(count));
+		this.chunk = new ChunkOutputStream(buffer.array());
+		this.tracker = DownloadTracker.get(asyncContext.getRequest());
+	}
+
+	/**
+	 * @param request The current request
+	 * @return true when the request can be switched to async mode
+	 */
+	public static boolean isSupported(HttpServletRequest request) {
+		return request.isAsyncSupported() && !request.isAsyncStarted();
+	}
+
+	/**
+	 * Start async mode and write the resource region, response headers must be set before.
+	 * @param request The current request
+	 * @param resource The download content, closed when completed
+	 * @param position Start position (inclusive)
+	 * @param count Number of bytes to write
+	 * @throws IOException When I/O error
+	 */
+	public static void start(HttpServletRequest request, DownloadResource resource, long position, long count)
+			throws IOException {
+		AsyncContext asyncContext = request.startAsync();
+		// Container timeout limit the total time, a large file on a slow link would be aborted
+		asyncContext.setTimeout(0);
+
+		AsyncDownload download = new AsyncDownload(asyncContext, resource, position, count);
+		asyncContext.addListener(download);
+		download.idleCheck = WATCHDOG.scheduleWithFixedDelay(download::checkIdle, CHECK_PERIOD, CHECK_PERIOD,
+				TimeUnit.MILLISECONDS);
+		download.output.setWriteListener(download);
+	}
+
+	/**
+	 * Stop the idle watchdog, called when the web application is stopped
+	 */
+	static void shutdown() {
+		WATCHDOG.shutdownNow();
+	}
+
+	@Override
+	public void onWritePossible() throws IOException {
+		lastWrite = System.currentTimeMillis();
+		byte[] bytes = buffer.array();
+		while (output.isReady()) {
+			if (position >= end) {
+				complete();
+				return;
+			}
+
+			int size = readChunk(bytes, (int) Math.min(bytes.length, end - position));
+			if (size <= 0) {
+				complete();
+				return;
+			}
+
+			output.write(bytes, 0, size);
+			position += size;
+			lastWrite = System.currentTimeMillis();
+			if (tracker != null) {
+				tracker.written(size);
+			}
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		if (tracker != null) {
+			tracker.fail(t);
+		}
+		complete();
+	}
+
+	@Override
+	public void onComplete(AsyncEvent event) {
+		release();
+	}
+
+	@Override
+	public void onTimeout(AsyncEvent event) {
+		if (tracker != null) {
+			tracker.fail(new IOException("Async download timeout"));
+		}
+		complete();
+	}
+
+	@Override
+	public void onError(AsyncEvent event) {
+		if (tracker != null) {
+			tracker.fail(event.getThrowable());
+		}
+		release();
+	}
+
+	@Override
+	public void onStartAsync(AsyncEvent event) {
+		// Not used
+	}
+
+	private void checkIdle() {
+		if (released.get() || System.currentTimeMillis() - lastWrite <= IDLE_TIMEOUT) {
+			return;
+		}
+
+		if (tracker != null) {
+			tracker.fail(new IOException("Async download idle timeout"));
+		}
+		complete();
+	}
+
+	private int readChunk(byte[] bytes, int size) throws IOException {
+		if (resource instanceof FileResource) {
+			// Read into the leased buffer directly, no copy through the chunk stream
+			return ((FileResource) resource).read(bytes, position, size);
+		}
+
+		chunk.reset();
+		resource.writeTo(chunk, position, size);
+		return chunk.count;
+	}
+
+	private void complete() {
+		if (!released.get()) {
+			asyncContext.complete();
+		}
+		release();
+	}
+
+	private void release() {
+		if (released.compareAndSet(false, true)) {
+			if (idleCheck != null) {
+				idleCheck.cancel(false);
+			}
+			if (tracker != null) {
+				tracker.finish((HttpServletResponse) asyncContext.getResponse());
+			}
+			BufferPool.heap().release(buffer);
+			try {
+				resource.close();
+			} catch (IOException ex) {
+				// Ignore exception
+			}
+		}
+	}
+
+	private static ScheduledThreadPoolExecutor createWatchdog() {
+		AtomicInteger counter = new AtomicInteger();
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread thread = new Thread(r, "faces-download-watchdog-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		executor.setKeepAliveTime(60, TimeUnit.SECONDS);
+		// The thread ends when no download is running
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Collect one chunk of the resource into the leased buffer
+	 */
+	private static final class ChunkOutputStream extends OutputStream {
+		private final byte[] bytes;
+		private int count;
+
+		private ChunkOutputStream(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		private void reset() {
+			count = 0;
+		}
+
+		@Override
+		public void write(int b) {
+			bytes[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int offset, int length) {
+			System.arraycopy(b, offset, bytes, count, length);
+			count += length;
+		}
+	}
+}
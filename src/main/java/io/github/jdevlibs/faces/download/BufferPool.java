@@ -0,0 +1,190 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of reusable buffers bucketed by size (8 KB, 64 KB, 256 KB, 1 MB).
+ * {@link #heap()} is the pool of the download paths: the target is an OutputStream that takes a byte array,
+ * so a direct buffer would cost one more copy, and channel reads into the array go through the JDK per-thread
+ * direct buffer. {@link #direct()} is for consumers taking a ByteBuffer (Ex. MessageDigest of a FileChannel).
+ * Only buffers leased by {@link #acquire(int)} are taken back by {@link #release(ByteBuffer)},
+ * other buffers and a second release of the same buffer are ignored.
+ * The maximum pooled bytes of each pool can be set by system property <code>faces.buffer.pool.max</code>.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class BufferPool {
+	private static final int[] BUCKETS 			= {8 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024};
+	private static final long DEF_MAX_POOLED 	= 16L * 1024 * 1024;
+	private static final BufferPool DIRECT 		= new BufferPool(true, Long.getLong("faces.buffer.pool.max", DEF_MAX_POOLED));
+	private static final BufferPool HEAP 		= new BufferPool(false, Long.getLong("faces.buffer.pool.max", DEF_MAX_POOLED));
+
+	private final boolean directBuffer;
+	private final ArrayBlockingQueue<ByteBuffer>[] queues;
+	private final LongAdder leases = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final AtomicLong bytesInUse = new AtomicLong();
+	private final Set<Lease> leased = ConcurrentHashMap.newKeySet();
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private BufferPool(boolean directBuffer, long maxPooledBytes) {
+		this.directBuffer = directBuffer;
+		this.queues = new ArrayBlockingQueue[BUCKETS.length];
+		long bucketBytes = maxPooledBytes / BUCKETS.length;
+		for (int i = 0; i < BUCKETS.length; i++) {
+			int capacity = (int) Math.max(1, Math.min(1024, bucketBytes / BUCKETS[i]));
+			queues[i] = new ArrayBlockingQueue<>(capacity);
+		}
+	}
+
+	public static BufferPool direct() {
+		return DIRECT;
+	}
+
+	public static BufferPool heap() {
+		return HEAP;
+	}
+
+	/**
+	 * Choose buffer size from the content length, small content use small buffer
+	 * and large files use the largest bucket.
+	 * @param contentLength The content length, -1 when unknown
+	 * @return Buffer size
+	 */
+	public static int sizeFor(long contentLength) {
+		if (contentLength < 0) {
+			return BUCKETS[1];
+		}
+		if (contentLength <= BUCKETS[0]) {
+			return BUCKETS[0];
+		}
+		if (contentLength <= 1024L * 1024) {
+			return BUCKETS[1];
+		}
+		if (contentLength <= 64L * 1024 * 1024) {
+			return BUCKETS[2];
+		}
+		return BUCKETS[3];
+	}
+
+	/**
+	 * Lease a cleared buffer, must be returned by {@link #release(ByteBuffer)}.
+	 * @param size Requested size, sizes above 1 MB are served with 1 MB buffer
+	 * @return Buffer with capacity at least min(size, 1 MB)
+	 */
+	public ByteBuffer acquire(int size) {
+		int index = bucketOf(size);
+		leases.increment();
+
+		ByteBuffer buffer = queues[index].poll();
+		if (buffer == null) {
+			misses.increment();
+			buffer = (directBuffer ? ByteBuffer.allocateDirect(BUCKETS[index]) : ByteBuffer.allocate(BUCKETS[index]));
+		}
+		bytesInUse.addAndGet(buffer.capacity());
+		leased.add(new Lease(buffer));
+
+		return buffer;
+	}
+
+	/**
+	 * Return a leased buffer to the pool, drop it when the bucket is full.
+	 * @param buffer The leased buffer, ignored when not leased by this pool
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || !leased.remove(new Lease(buffer))) {
+			return;
+		}
+
+		bytesInUse.addAndGet(-buffer.capacity());
+		for (int i = 0; i < BUCKETS.length; i++) {
+			if (BUCKETS[i] == buffer.capacity()) {
+				buffer.clear();
+				queues[i].offer(buffer);
+				return;
+			}
+		}
+	}
+
+	public boolean isDirect() {
+		return directBuffer;
+	}
+
+	public long getLeases() {
+		return leases.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getBytesInUse() {
+		return bytesInUse.get();
+	}
+
+	public long getPooledBytes() {
+		long pooled = 0;
+		for (int i = 0; i < BUCKETS.length; i++) {
+			pooled += (long) queues[i].size() * BUCKETS[i];
+		}
+		return pooled;
+	}
+
+	@Override
+	public String toString() {
+		return "BufferPool[direct=" + directBuffer + ", leases=" + getLeases() + ", misses=" + getMisses()
+				+ ", bytesInUse=" + getBytesInUse() + ", pooledBytes=" + getPooledBytes() + "]";
+	}
+
+	private static int bucketOf(int size) {
+		for (int i = 0; i < BUCKETS.length; i++) {
+			if (size <= BUCKETS[i]) {
+				return i;
+			}
+		}
+		return BUCKETS.length - 1;
+	}
+
+	/**
+	 * Identity of the leased buffer, ByteBuffer equals and hashCode compare the content
+	 */
+	private static final class Lease {
+		private final ByteBuffer buffer;
+
+		private Lease(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(buffer);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Lease && ((Lease) obj).buffer == buffer;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * In-memory download content
+ * @author supot.jdev
+ * @version 1.0
+ */
+public class ByteArrayResource implements DownloadResource {
+	private final byte[] content;
+
+	public ByteArrayResource(byte[] content) {
+		this.content = content;
+	}
+
+	public byte[] getContent() {
+		return content;
+	}
+
+	@Override
+	public long length() {
+		return content.length;
+	}
+
+	@Override
+	public long lastModified() {
+		return -1;
+	}
+
+	@Override
+	public String entityTag() {
+		return EntityTags.forContent(content);
+	}
+
+	@Override
+	public byte[] digest(String algorithm) {
+		return Digests.forContent(content, algorithm);
+	}
+
+	@Override
+	public long writeTo(OutputStream output, long position, long count) throws IOException {
+		output.write(content, (int) position, (int) count);
+		return count;
+	}
+
+	@Override
+	public void close() {
+		// Nothing to release
+	}
+}
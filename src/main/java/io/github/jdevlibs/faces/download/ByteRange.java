@@ -0,0 +1,58 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+/**
+ * Satisfiable byte range, start and end position are inclusive.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class ByteRange {
+	private final long start;
+	private final long end;
+
+	public ByteRange(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long length() {
+		return end - start + 1;
+	}
+
+	/**
+	 * @param total The complete content length
+	 * @return Content-Range header value, Ex. bytes 0-499/1234
+	 */
+	public String toContentRange(long total) {
+		return "bytes " + start + "-" + end + "/" + total;
+	}
+
+	@Override
+	public String toString() {
+		return start + "-" + end;
+	}
+}
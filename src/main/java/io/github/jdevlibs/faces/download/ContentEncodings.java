@@ -0,0 +1,117 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Accept-Encoding negotiation
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class ContentEncodings {
+	public static final String GZIP 		= "gzip";
+	public static final String BROTLI 		= "br";
+	public static final String IDENTITY 	= "identity";
+	private static final String VARY 		= "Vary";
+	private static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+	// Below this size the block-parallel compression does not pay off
+	private static final long PARALLEL_MIN_SIZE = 1024L * 1024;
+	private static final int GZIP_BUFFER_SIZE 	= 64 * 1024;
+
+	private ContentEncodings() {
+	}
+
+	/**
+	 * Add Vary: Accept-Encoding once, the response may already vary on it or on other headers
+	 * @param response The current response
+	 */
+	public static void addVary(HttpServletResponse response) {
+		for (String value : response.getHeaders(VARY)) {
+			for (String name : value.split(",")) {
+				String token = name.trim().toLowerCase(Locale.ROOT);
+				if ("*".equals(token) || "accept-encoding".equals(token)) {
+					return;
+				}
+			}
+		}
+		response.addHeader(VARY, ACCEPT_ENCODING);
+	}
+
+	/**
+	 * Check the content coding is acceptable with q-value greater than 0
+	 * @param acceptEncoding The Accept-Encoding header value, Ex. gzip, deflate, br;q=0.8
+	 * @param coding The content coding, Ex. gzip
+	 * @return true when accepted
+	 */
+	public static boolean accepts(String acceptEncoding, String coding) {
+		if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+			return false;
+		}
+
+		float wildcard = -1;
+		for (String item : acceptEncoding.split(",")) {
+			String[] parts = item.split(";");
+			String name = parts[0].trim();
+			float quality = parseQuality(parts);
+			if (name.equalsIgnoreCase(coding)
+					|| (GZIP.equals(coding) && name.equalsIgnoreCase("x-gzip"))) {
+				return quality > 0;
+			}
+			if ("*".equals(name)) {
+				wildcard = quality;
+			}
+		}
+
+		return wildcard > 0;
+	}
+
+	/**
+	 * Create gzip stream, use block-parallel deflate for large or unknown length content on multi-core machine.
+	 * @param output The target output
+	 * @param contentLength The uncompressed length, -1 when unknown
+	 * @return Gzip output stream, must be closed to write the gzip trailer
+	 * @throws IOException When I/O error
+	 */
+	public static OutputStream gzip(OutputStream output, long contentLength) throws IOException {
+		if (ParallelGzipOutputStream.isParallel() && (contentLength < 0 || contentLength >= PARALLEL_MIN_SIZE)) {
+			return new ParallelGzipOutputStream(output);
+		}
+		return new GZIPOutputStream(output, GZIP_BUFFER_SIZE);
+	}
+
+	private static float parseQuality(String[] parts) {
+		for (int i = 1; i < parts.length; i++) {
+			String param = parts[i].trim();
+			if (param.startsWith("q=") || param.startsWith("Q=")) {
+				try {
+					return Float.parseFloat(param.substring(2).trim());
+				} catch (NumberFormatException ex) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+}
@@ -0,0 +1,211 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import io.github.jdevlibs.utils.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Content digest (SHA-256, ...) of download content.
+ * File digests are cached by path, last modified and length, so repeat downloads of an unchanged file
+ * do not read the file twice.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class Digests {
+	public static final String SHA_256 = "SHA-256";
+	public static final String SHA_512 = "SHA-512";
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final LruCache<FileKey, byte[]> FILE_DIGESTS = new LruCache<>(1024);
+
+	private Digests() {
+	}
+
+	/**
+	 * @param algorithm The digest algorithm, Ex. SHA-256
+	 * @return New message digest
+	 * @throws IllegalArgumentException When the algorithm is not supported
+	 */
+	public static MessageDigest create(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalArgumentException("Digest algorithm not supported : " + algorithm, ex);
+		}
+	}
+
+	/**
+	 * Cached digest of the file
+	 * @param file The file
+	 * @param algorithm The digest algorithm
+	 * @return The digest, or null when not computed yet or the file was changed
+	 */
+	public static byte[] getCached(File file, String algorithm) {
+		FileKey key = FileKey.of(file, algorithm);
+		if (key == null) {
+			return null;
+		}
+
+		byte[] digest = FILE_DIGESTS.get(key);
+		return (digest != null ? digest.clone() : null);
+	}
+
+	/**
+	 * Compute (or get cached) digest of the file, used to precompute digest before download
+	 * @param file The file
+	 * @param algorithm The digest algorithm
+	 * @return The digest
+	 * @throws IOException When I/O error
+	 */
+	public static byte[] forFile(File file, String algorithm) throws IOException {
+		byte[] digest = getCached(file, algorithm);
+		if (digest != null) {
+			return digest;
+		}
+
+		digest = compute(file, algorithm);
+		cache(file, algorithm, digest);
+		return digest.clone();
+	}
+
+	/**
+	 * Compute digest of the file without the cache, for temp files which path may be reused
+	 * @param file The file
+	 * @param algorithm The digest algorithm
+	 * @return The digest
+	 * @throws IOException When I/O error
+	 */
+	public static byte[] compute(File file, String algorithm) throws IOException {
+		MessageDigest md = create(algorithm);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long length = channel.size();
+			ByteBuffer buffer = BufferPool.direct().acquire(BufferPool.sizeFor(length));
+			try {
+				while (channel.read(buffer) != -1) {
+					buffer.flip();
+					md.update(buffer);
+					buffer.clear();
+				}
+			} finally {
+				BufferPool.direct().release(buffer);
+			}
+		}
+
+		return md.digest();
+	}
+
+	/**
+	 * @param content The content
+	 * @param algorithm The digest algorithm
+	 * @return The digest
+	 */
+	public static byte[] forContent(byte[] content, String algorithm) {
+		return create(algorithm).digest(content);
+	}
+
+	/**
+	 * Keep digest computed while the file was streamed
+	 * @param file The file
+	 * @param algorithm The digest algorithm
+	 * @param digest The digest of the whole file
+	 */
+	public static void cache(File file, String algorithm, byte[] digest) {
+		FileKey key = FileKey.of(file, algorithm);
+		if (key != null && digest != null) {
+			FILE_DIGESTS.put(key, digest.clone());
+		}
+	}
+
+	public static void clearCache() {
+		FILE_DIGESTS.clear();
+	}
+
+	/**
+	 * Build Repr-Digest field value (RFC 9530)
+	 * @param algorithm The digest algorithm, Ex. SHA-256
+	 * @param digest The digest
+	 * @return Field value, Ex. sha-256=:X48E9qOokqqrvdts8nOJRJN3OWDUoyWxBf7kbu9DBPE=:
+	 */
+	public static String toFieldValue(String algorithm, byte[] digest) {
+		return algorithm.toLowerCase(Locale.ROOT) + "=:" + Base64.getEncoder().encodeToString(digest) + ":";
+	}
+
+	public static String toHex(byte[] digest) {
+		char[] chars = new char[digest.length * 2];
+		for (int i = 0; i < digest.length; i++) {
+			chars[i * 2] = HEX[(digest[i] >> 4) & 0x0F];
+			chars[i * 2 + 1] = HEX[digest[i] & 0x0F];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Cache key of file content, a changed file has another key
+	 */
+	private static final class FileKey {
+		private final String path;
+		private final long lastModified;
+		private final long length;
+		private final String algorithm;
+
+		private FileKey(String path, long lastModified, long length, String algorithm) {
+			this.path = path;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.algorithm = algorithm;
+		}
+
+		private static FileKey of(File file, String algorithm) {
+			long lastModified = file.lastModified();
+			if (lastModified <= 0) {
+				return null;
+			}
+			return new FileKey(file.getAbsolutePath(), lastModified, file.length(),
+					algorithm.toUpperCase(Locale.ROOT));
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(path, lastModified, length, algorithm);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof FileKey)) {
+				return false;
+			}
+
+			FileKey other = (FileKey) obj;
+			return lastModified == other.lastModified && length == other.length
+					&& path.equals(other.path) && algorithm.equals(other.algorithm);
+		}
+	}
+}
@@ -0,0 +1,333 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import io.github.jdevlibs.faces.JSFMimeTypes;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Write {@link DownloadResource} to the servlet response,
+ * handle conditional request (ETag/Last-Modified and 304 Not Modified), gzip negotiation
+ * and Range/If-Range (206 Partial Content and 416) for resumed and segmented downloads.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class DownloadHandler {
+	private static final String ACCEPT_RANGES 	= "Accept-Ranges";
+	private static final String CONTENT_RANGE 	= "Content-Range";
+	private static final String LAST_MODIFIED 	= "Last-Modified";
+	private static final String ETAG 			= "ETag";
+	private static final String IF_NONE_MATCH 	= "If-None-Match";
+	private static final String IF_MOD_SINCE 	= "If-Modified-Since";
+	private static final String RANGE 			= "Range";
+	private static final String IF_RANGE 		= "If-Range";
+	private static final String ACCEPT_ENCODING = "Accept-Encoding";
+	private static final String CONTENT_ENCODING = "Content-Encoding";
+	private static final String CRLF 			= "\r\n";
+	private static final long MIN_COMPRESS_SIZE = 1024;
+	private static final String MULTIPART_TYPE 	= "multipart/byteranges; boundary=";
+
+	private DownloadHandler() {
+	}
+
+	public static void write(HttpServletRequest request, HttpServletResponse response,
+			DownloadResource resource) throws IOException {
+		write(request, response, resource, new DownloadOption());
+	}
+
+	/**
+	 * Write the resource with status 200, 206, 304 or 416 depending on the request headers.
+	 * Content type and disposition headers must be set before call this method.
+	 * @param request The current request
+	 * @param response The current response
+	 * @param resource The download content
+	 * @param option The download option
+	 * @return true when the body is written asynchronously, the resource is then closed by the async writer
+	 * @throws IOException When I/O error
+	 */
+	public static boolean write(HttpServletRequest request, HttpServletResponse response,
+			DownloadResource resource, DownloadOption option) throws IOException {
+		long length = resource.length();
+		response.setHeader(ACCEPT_RANGES, "bytes");
+		if (resource.lastModified() > 0) {
+			response.setDateHeader(LAST_MODIFIED, resource.lastModified());
+		}
+
+		String encoding = negotiateEncoding(request, response, length, option);
+
+		String etag = null;
+		if (option.isEtag()) {
+			etag = (option.getVersion() != null ? EntityTags.forVersion(option.getVersion()) : resource.entityTag());
+			if (encoding != null) {
+				etag = EntityTags.variant(etag, encoding);
+			}
+			if (etag != null) {
+				response.setHeader(ETAG, etag);
+			}
+			if (isNotModified(request, resource, etag)) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return false;
+			}
+		}
+
+		StreamDigest digest = resolveDigest(response, resource, option, encoding);
+		if (encoding != null) {
+			response.setStatus(HttpServletResponse.SC_OK);
+			writeCompressed(request, response, resource, option, digest);
+			return false;
+		}
+
+		List<ByteRange> ranges = null;
+		String range = request.getHeader(RANGE);
+		if (range != null && isIfRangeMatch(request, resource, etag)) {
+			ranges = HttpRanges.parse(range, length);
+		}
+
+		if (ranges == null) {
+			response.setStatus(HttpServletResponse.SC_OK);
+			return writeRange(request, response, resource, new ByteRange(0, length - 1), option, digest);
+		} else if (ranges.isEmpty()) {
+			response.setHeader(CONTENT_RANGE, "bytes */" + length);
+			response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			response.setContentLengthLong(0);
+		} else if (ranges.size() == 1) {
+			ByteRange byteRange = ranges.get(0);
+			response.setHeader(CONTENT_RANGE, byteRange.toContentRange(length));
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			return writeRange(request, response, resource, byteRange, option, null);
+		} else {
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			writeMultipart(request, response, resource, ranges, option);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Parse HTTP-date header value
+	 * @param value The header value
+	 * @return Time in milliseconds, or -1 when invalid
+	 */
+	public static long parseHttpDate(String value) {
+		if (value == null || value.isEmpty()) {
+			return -1;
+		}
+
+		try {
+			return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		} catch (DateTimeParseException ex) {
+			return -1;
+		}
+	}
+
+	private static String negotiateEncoding(HttpServletRequest request, HttpServletResponse response,
+			long length, DownloadOption option) {
+		// Already encoded content (pre-compressed sibling)
+		if (response.containsHeader(CONTENT_ENCODING)) {
+			return null;
+		}
+		if (!option.isCompress() || length < MIN_COMPRESS_SIZE
+				|| !JSFMimeTypes.isCompressibleType(response.getContentType())) {
+			return null;
+		}
+
+		ContentEncodings.addVary(response);
+		// Range applies to the identity content, resumed downloads are sent uncompressed
+		if (request.getHeader(RANGE) != null
+				|| !ContentEncodings.accepts(request.getHeader(ACCEPT_ENCODING), ContentEncodings.GZIP)) {
+			return null;
+		}
+		return ContentEncodings.GZIP;
+	}
+
+	private static boolean isNotModified(HttpServletRequest request, DownloadResource resource, String etag) {
+		String method = request.getMethod();
+		if (!"GET".equals(method) && !"HEAD".equals(method)) {
+			return false;
+		}
+
+		// If-None-Match take precedence over If-Modified-Since
+		String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+		if (ifNoneMatch != null) {
+			return EntityTags.matches(ifNoneMatch, etag, true);
+		}
+
+		long lastModified = resource.lastModified();
+		long date = parseHttpDate(request.getHeader(IF_MOD_SINCE));
+		return lastModified > 0 && date != -1 && (lastModified / 1000) * 1000 <= date;
+	}
+
+	private static boolean isIfRangeMatch(HttpServletRequest request, DownloadResource resource, String etag) {
+		String ifRange = request.getHeader(IF_RANGE);
+		if (ifRange == null) {
+			return true;
+		}
+
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			return EntityTags.matches(ifRange, etag, false);
+		}
+
+		long lastModified = resource.lastModified();
+		long date = parseHttpDate(ifRange);
+		return lastModified > 0 && date != -1 && date == (lastModified / 1000) * 1000;
+	}
+
+	/**
+	 * Send known digest as header, otherwise return the digest to be computed while the full body is written
+	 */
+	private static StreamDigest resolveDigest(HttpServletResponse response, DownloadResource resource,
+			DownloadOption option, String encoding) {
+		String algorithm = option.getDigest();
+		if (algorithm == null) {
+			return null;
+		}
+
+		byte[] digest = resource.digest(algorithm);
+		if (digest == null) {
+			StreamDigest streamDigest = StreamDigest.of(option);
+			if (resource instanceof FileResource && ((FileResource) resource).isPersistent()) {
+				streamDigest.cacheFor(((FileResource) resource).getFile());
+			}
+			return streamDigest;
+		}
+
+		// Repr-Digest is the digest of the selected representation, identity content only
+		if (encoding == null) {
+			response.setHeader(StreamDigest.REPR_DIGEST, Digests.toFieldValue(algorithm, digest));
+		}
+		StreamDigest.notify(option, digest);
+		return null;
+	}
+
+	private static boolean writeRange(HttpServletRequest request, HttpServletResponse response,
+			DownloadResource resource, ByteRange range, DownloadOption option, StreamDigest digest)
+			throws IOException {
+		long count = Math.max(0, range.length());
+		response.setContentLengthLong(count);
+
+		DownloadTracker tracker = DownloadTracker.get(request);
+		if (tracker != null) {
+			tracker.expect(count);
+		}
+
+		// Computing digest need the bytes, sendfile and async are used only when the digest is known
+		if (digest != null && count > 0) {
+			// Content-Length is set, HTTP/1.1 body is not chunked and cannot carry the trailer
+			digest.trailer(request, response, false);
+			try (OutputStream output = digest.wrap(DownloadTracker.output(request, response), count)) {
+				writeContent(resource, output, range.getStart(), count, option);
+				digest.finish();
+			}
+			return false;
+		}
+
+		// Sendfile read the file after the resource is closed, temp files are deleted on close.
+		// The container write the file, progress cannot be counted.
+		if (resource instanceof FileResource && ((FileResource) resource).isPersistent()
+				&& (tracker == null || !tracker.isProgress())
+				&& FileTransfer.isSendfileSupported(request, response, count)) {
+			FileTransfer.sendfile(request, ((FileResource) resource).getFile(), range.getStart(), count);
+			if (tracker != null) {
+				// Written by the container after the request, count as sent
+				tracker.written(count);
+			}
+			return false;
+		}
+
+		if (option.isAsync() && count > 0 && AsyncDownload.isSupported(request)) {
+			AsyncDownload.start(request, resource, range.getStart(), count);
+			return true;
+		}
+
+		try (OutputStream output = DownloadTracker.output(request, response)) {
+			if (count > 0) {
+				writeContent(resource, output, range.getStart(), count, option);
+			}
+		}
+		return false;
+	}
+
+	private static void writeCompressed(HttpServletRequest request, HttpServletResponse response,
+			DownloadResource resource, DownloadOption option, StreamDigest digest) throws IOException {
+		long length = resource.length();
+		response.setHeader(CONTENT_ENCODING, ContentEncodings.GZIP);
+		OutputStream gzip = ContentEncodings.gzip(DownloadTracker.output(request, response), length);
+		// Digest of the identity content, reported to the listener only
+		try (OutputStream output = (digest != null ? digest.wrap(gzip, length) : gzip)) {
+			writeContent(resource, output, 0, length, option);
+			if (digest != null) {
+				digest.finish();
+			}
+		}
+	}
+
+	private static void writeMultipart(HttpServletRequest request, HttpServletResponse response,
+			DownloadResource resource, List<ByteRange> ranges, DownloadOption option) throws IOException {
+		String contentType = response.getContentType();
+		String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong())
+				+ Long.toHexString(ThreadLocalRandom.current().nextLong());
+		long length = resource.length();
+
+		byte[][] heads = new byte[ranges.size()][];
+		long contentLength = 0;
+		for (int i = 0; i < ranges.size(); i++) {
+			ByteRange range = ranges.get(i);
+			String head = CRLF + "--" + boundary + CRLF
+					+ (contentType != null ? "Content-Type: " + contentType + CRLF : "")
+					+ CONTENT_RANGE + ": " + range.toContentRange(length) + CRLF + CRLF;
+			heads[i] = head.getBytes(StandardCharsets.ISO_8859_1);
+			contentLength += heads[i].length + range.length();
+		}
+		byte[] tail = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.ISO_8859_1);
+		contentLength += tail.length;
+
+		response.setContentType(MULTIPART_TYPE + boundary);
+		response.setContentLengthLong(contentLength);
+		DownloadTracker tracker = DownloadTracker.get(request);
+		if (tracker != null) {
+			tracker.expect(contentLength);
+		}
+		try (OutputStream output = DownloadTracker.output(request, response)) {
+			for (int i = 0; i < ranges.size(); i++) {
+				ByteRange range = ranges.get(i);
+				output.write(heads[i]);
+				writeContent(resource, output, range.getStart(), range.length(), option);
+			}
+			output.write(tail);
+		}
+	}
+
+	private static void writeContent(DownloadResource resource, OutputStream output, long position, long count,
+			DownloadOption option) throws IOException {
+		if (option.isMemoryMapped() && resource instanceof FileResource) {
+			FileTransfer.transferMapped(((FileResource) resource).getChannel(), position, count, output);
+		} else {
+			resource.writeTo(output, position, count);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of background download job
+ * @author supot.jdev
+ * @version 1.0
+ */
+public class DownloadJob implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public enum Status {
+		PENDING, RUNNING, DONE, FAILED
+	}
+
+	private final String token;
+	private final String fileName;
+	private final Status status;
+	private final long size;
+	private final long createdTime;
+	private final String error;
+
+	DownloadJob(String token, String fileName, Status status, long size, long createdTime, String error) {
+		this.token = token;
+		this.fileName = fileName;
+		this.status = status;
+		this.size = size;
+		this.createdTime = createdTime;
+		this.error = error;
+	}
+
+	public String getToken() {
+		return token;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getCreatedTime() {
+		return createdTime;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public boolean isDone() {
+		return status == Status.DONE;
+	}
+
+	public boolean isFailed() {
+		return status == Status.FAILED;
+	}
+
+	public boolean isFinished() {
+		return status == Status.DONE || status == Status.FAILED;
+	}
+}
@@ -0,0 +1,441 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import io.github.jdevlibs.faces.FacesUtils;
+import io.github.jdevlibs.faces.JSFValidators;
+import jakarta.faces.context.ExternalContext;
+import jakarta.faces.context.FacesContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background generation of heavy downloads (reports, exports).
+ * The generator runs off the request thread and the result is stored in a size-capped temp area,
+ * the user fetch the file later with the returned token. The token is bound to the user principal
+ * (or the session when not logged in) that submitted the job, other users cannot download the result.
+ * <pre>
+ * // Action: start the job and poll with p:poll until DownloadJobs.isDone(token)
+ * token = DownloadJobs.submit("report.xlsx", output -&gt; reportService.write(output));
+ *
+ * // p:commandButton ajax="false" + p:fileDownload monitorDownload="true", or token URL page with f:viewAction
+ * DownloadJobs.download(token);
+ * </pre>
+ * Limits can be set by system properties <code>faces.download.jobs.running</code> (concurrent generators),
+ * <code>faces.download.jobs.queued</code>, <code>faces.download.jobs.maxBytes</code> (temp area size shared by all
+ * jobs, the oldest results are deleted to make room and a job fails when the running jobs alone exceed it)
+ * and <code>faces.download.jobs.ttl</code> (result lifetime in milliseconds).
+ * @author supot.jdev
+ * @version 1.0
+ */
+@Slf4j
+public final class DownloadJobs {
+	public static final String TOKEN_PARAM 	= "token";
+
+	private static final int MAX_RUNNING 	= Integer.getInteger("faces.download.jobs.running",
+			Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+	private static final int MAX_QUEUED 	= Integer.getInteger("faces.download.jobs.queued", 100);
+	private static final long MAX_BYTES 	= Long.getLong("faces.download.jobs.maxBytes", 1024L * 1024 * 1024);
+	private static final long TTL 			= Long.getLong("faces.download.jobs.ttl", 30 * 60 * 1000L);
+	private static final long PURGE_INTERVAL = 60 * 1000L;
+	private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+	private static final Map<String, Job> JOBS = new ConcurrentHashMap<>();
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static final Semaphore RUNNING = new Semaphore(MAX_RUNNING);
+	private static final AtomicInteger PENDING = new AtomicInteger();
+	private static final AtomicLong BYTES_USED = new AtomicLong();
+	private static final ExecutorService EXECUTOR = createExecutor();
+	private static volatile long lastPurge = System.currentTimeMillis();
+	private static Path directory;
+
+	private DownloadJobs() {
+	}
+
+	/**
+	 * Submit background generator
+	 * @param fileName The download file name
+	 * @param generator Write the content to output
+	 * @return Download token
+	 * @throws RejectedExecutionException When too many jobs are waiting
+	 */
+	public static String submit(String fileName, ContentWriter generator) {
+		return submit(fileName, generator, currentOwner());
+	}
+
+	/**
+	 * Submit background generator outside a faces request
+	 * @param fileName The download file name
+	 * @param generator Write the content to output
+	 * @param owner The owner checked by {@link #download(String)}, Ex. {@link #ownerOf(String, String)},
+	 * null when any request can download the result
+	 * @return Download token
+	 * @throws RejectedExecutionException When too many jobs are waiting
+	 */
+	public static String submit(String fileName, ContentWriter generator, String owner) {
+		purge();
+		if (PENDING.incrementAndGet() > MAX_RUNNING + MAX_QUEUED) {
+			PENDING.decrementAndGet();
+			throw new RejectedExecutionException("Too many download jobs");
+		}
+
+		Job job = new Job(createToken(), fileName, owner);
+		JOBS.put(job.token, job);
+		try {
+			EXECUTOR.execute(() -> run(job, generator));
+		} catch (RejectedExecutionException ex) {
+			PENDING.decrementAndGet();
+			JOBS.remove(job.token);
+			throw ex;
+		}
+
+		return job.token;
+	}
+
+	/**
+	 * @param token The download token
+	 * @return Job snapshot, null when not found or expired
+	 */
+	public static DownloadJob getJob(String token) {
+		purge();
+		Job job = findJob(token);
+		return (job == null ? null : job.snapshot());
+	}
+
+	public static boolean isDone(String token) {
+		DownloadJob job = getJob(token);
+		return job != null && job.isDone();
+	}
+
+	/**
+	 * Build token URL of the download page
+	 * @param viewId The download page, Ex. /download.xhtml
+	 * @param token The download token
+	 * @return URL with context path and token parameter
+	 */
+	public static String getDownloadUrl(String viewId, String token) {
+		return FacesUtils.concatPath(viewId) + "?" + TOKEN_PARAM + "=" + FacesUtils.encodeURL(token);
+	}
+
+	/**
+	 * Download the job result of the token request parameter, for token URL page (f:viewAction)
+	 * @return false when the result is not ready or not found
+	 * @throws IOException When I/O error
+	 */
+	public static boolean downloadFromRequest() throws IOException {
+		String token = FacesUtils.getParameter(TOKEN_PARAM);
+		return download(token);
+	}
+
+	public static boolean download(String token) throws IOException {
+		return download(token, new DownloadOption());
+	}
+
+	/**
+	 * Download the job result, headers and primefaces.download cookie are set as
+	 * {@link FacesUtils#downloadFile(java.io.File, String, DownloadOption)}.
+	 * The result is kept until expired, so it can be downloaded again or resumed.
+	 * @param token The download token
+	 * @param option The download option
+	 * @return false when the result is not ready or not found
+	 * @throws IOException When I/O error
+	 */
+	public static boolean download(String token, DownloadOption option) throws IOException {
+		Job job = findJob(token);
+		if (job == null || job.status != DownloadJob.Status.DONE || !Files.exists(job.file)) {
+			return false;
+		}
+
+		job.lastAccess = System.currentTimeMillis();
+		FacesUtils.downloadFile(job.file.toFile(), job.fileName, option);
+		return true;
+	}
+
+	/**
+	 * Remove the job and delete the result
+	 * @param token The download token
+	 */
+	public static void remove(String token) {
+		Job job = findJob(token);
+		if (job != null && JOBS.remove(token, job)) {
+			delete(job);
+		}
+	}
+
+	/**
+	 * Owner value of {@link #submit(String, ContentWriter, String)}
+	 * @param userPrincipal The login user name, may be null
+	 * @param sessionId The session id, used when not logged in
+	 * @return The owner, null when both are null
+	 */
+	public static String ownerOf(String userPrincipal, String sessionId) {
+		if (userPrincipal != null) {
+			return "user:" + userPrincipal;
+		}
+		return (sessionId == null ? null : "session:" + sessionId);
+	}
+
+	/**
+	 * Job of the token owned by the current user, expired results are removed
+	 */
+	private static Job findJob(String token) {
+		Job job = (JSFValidators.isEmpty(token) ? null : JOBS.get(token));
+		if (job == null) {
+			return null;
+		}
+
+		if (isExpired(job, System.currentTimeMillis())) {
+			if (JOBS.remove(job.token, job)) {
+				delete(job);
+			}
+			return null;
+		}
+		return (job.owner == null || Objects.equals(job.owner, currentOwner()) ? job : null);
+	}
+
+	private static String currentOwner() {
+		FacesContext context = FacesContext.getCurrentInstance();
+		if (context == null) {
+			return null;
+		}
+
+		ExternalContext external = context.getExternalContext();
+		// The session is created, otherwise the token of an anonymous user would be public
+		return ownerOf(external.getRemoteUser(), external.getSessionId(true));
+	}
+
+	private static boolean isExpired(Job job, long now) {
+		return job.isFinished() && now - job.lastAccess > TTL;
+	}
+
+	private static void run(Job job, ContentWriter generator) {
+		boolean acquired = false;
+		try {
+			RUNNING.acquire();
+			acquired = true;
+			job.status = DownloadJob.Status.RUNNING;
+
+			Path file = Files.createTempFile(getDirectory(), "job-", ".tmp");
+			job.file = file;
+			// The shared budget is checked while writing, runaway generators must not fill the temp disk
+			try (OutputStream output = new BufferedOutputStream(
+					new BudgetOutputStream(Files.newOutputStream(file), job), FILE_BUFFER_SIZE)) {
+				generator.write(output);
+			}
+
+			job.size = Files.size(file);
+			job.lastAccess = System.currentTimeMillis();
+			job.status = DownloadJob.Status.DONE;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			fail(job, ex);
+		} catch (Exception ex) {
+			log.error("Download job [{}] failed", job.fileName, ex);
+			fail(job, ex);
+		} finally {
+			if (acquired) {
+				RUNNING.release();
+			}
+			PENDING.decrementAndGet();
+		}
+	}
+
+	private static void fail(Job job, Exception ex) {
+		job.error = ex.getMessage();
+		job.status = DownloadJob.Status.FAILED;
+		delete(job);
+	}
+
+	/**
+	 * Count the bytes of the job against the budget shared by all jobs
+	 */
+	private static void reserve(Job job, long length) throws IOException {
+		if (BYTES_USED.addAndGet(length) > MAX_BYTES && !evictOverCapacity()) {
+			BYTES_USED.addAndGet(-length);
+			throw new IOException("Download jobs temp area exceeds the limit " + MAX_BYTES);
+		}
+		job.reserved.addAndGet(length);
+	}
+
+	/**
+	 * Delete the least recently used results until the temp area fit the limit
+	 * @return true when the temp area fit the limit
+	 */
+	private static synchronized boolean evictOverCapacity() {
+		List<Job> completed = new ArrayList<>();
+		for (Job job : JOBS.values()) {
+			if (job.status == DownloadJob.Status.DONE) {
+				completed.add(job);
+			}
+		}
+
+		completed.sort(Comparator.comparingLong(job -> job.lastAccess));
+		for (Job job : completed) {
+			if (BYTES_USED.get() <= MAX_BYTES) {
+				break;
+			}
+			if (JOBS.remove(job.token, job)) {
+				delete(job);
+			}
+		}
+		return BYTES_USED.get() <= MAX_BYTES;
+	}
+
+	private static void purge() {
+		long now = System.currentTimeMillis();
+		if (now - lastPurge < PURGE_INTERVAL) {
+			return;
+		}
+
+		lastPurge = now;
+		for (Job job : JOBS.values()) {
+			if (isExpired(job, now) && JOBS.remove(job.token, job)) {
+				delete(job);
+			}
+		}
+	}
+
+	private static void delete(Job job) {
+		BYTES_USED.addAndGet(-job.reserved.getAndSet(0));
+		if (job.file == null) {
+			return;
+		}
+
+		try {
+			Files.deleteIfExists(job.file);
+		} catch (IOException ex) {
+			log.warn("Cannot delete download job file {}", job.file);
+		}
+	}
+
+	private static synchronized Path getDirectory() throws IOException {
+		if (directory == null || !Files.isDirectory(directory)) {
+			directory = Files.createTempDirectory("faces-download-jobs");
+		}
+		return directory;
+	}
+
+	private static String createToken() {
+		byte[] bytes = new byte[18];
+		RANDOM.nextBytes(bytes);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+	}
+
+	private static ExecutorService createExecutor() {
+		// Virtual threads when running on Java 21+, the concurrency is bounded by RUNNING permits
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException ex) {
+			AtomicInteger counter = new AtomicInteger();
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_RUNNING, MAX_RUNNING, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), r -> {
+						Thread thread = new Thread(r, "faces-download-job-" + counter.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		}
+	}
+
+	/**
+	 * Stop the running generators and delete the results, called when the web application is stopped
+	 */
+	static void shutdown() {
+		EXECUTOR.shutdownNow();
+		for (Job job : JOBS.values()) {
+			JOBS.remove(job.token);
+			delete(job);
+		}
+	}
+
+	private static final class Job {
+		private final String token;
+		private final String fileName;
+		private final String owner;
+		private final long createdTime = System.currentTimeMillis();
+		// Bytes counted in BYTES_USED, released when the file is deleted
+		private final AtomicLong reserved = new AtomicLong();
+		private volatile DownloadJob.Status status = DownloadJob.Status.PENDING;
+		private volatile Path file;
+		private volatile long size;
+		private volatile long lastAccess = createdTime;
+		private volatile String error;
+
+		private Job(String token, String fileName, String owner) {
+			this.token = token;
+			this.fileName = fileName;
+			this.owner = owner;
+		}
+
+		private boolean isFinished() {
+			return status == DownloadJob.Status.DONE || status == DownloadJob.Status.FAILED;
+		}
+
+		private DownloadJob snapshot() {
+			return new DownloadJob(token, fileName, status, size, createdTime, error);
+		}
+	}
+
+	/**
+	 * Fail the write as soon as the bytes of all jobs exceed the limit
+	 */
+	private static final class BudgetOutputStream extends FilterOutputStream {
+		private final Job job;
+
+		private BudgetOutputStream(OutputStream output, Job job) {
+			super(output);
+			this.job = job;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			reserve(job, 1);
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			reserve(job, length);
+			out.write(bytes, offset, length);
+		}
+	}
+}
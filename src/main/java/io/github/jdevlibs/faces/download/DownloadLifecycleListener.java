@@ -0,0 +1,57 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import io.github.jdevlibs.faces.session.SessionFootprint;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.ServletRequestEvent;
+import jakarta.servlet.ServletRequestListener;
+import jakarta.servlet.annotation.WebListener;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stop the background threads of the download helpers (parallel gzip, async idle watchdog, read-ahead,
+ * pre-compression, download jobs) and of the session footprint sampler, and delete the temp files
+ * when the web application is stopped, so a redeploy does not leak the web application class loader.
+ * Downloads which stream was not closed by the caller are reported to metrics and progress when the request ends.
+ * Registered by annotation scanning when the jar is in <code>WEB-INF/lib</code>, otherwise add it to web.xml.
+ * @author supot.jdev
+ * @version 1.0
+ */
+@Slf4j
+@WebListener
+public class DownloadLifecycleListener implements ServletContextListener, ServletRequestListener {
+
+	@Override
+	public void requestDestroyed(ServletRequestEvent event) {
+		DownloadTracker.finishRequest(event.getServletRequest());
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		ParallelGzipOutputStream.shutdown();
+		AsyncDownload.shutdown();
+		ReadAheadStreamer.shutdown();
+		PrecompressedFiles.shutdown();
+		DownloadJobs.shutdown();
+		SharedDownloads.clear();
+		SessionFootprint.shutdown();
+		log.debug("Download helper threads stopped");
+	}
+}
@@ -0,0 +1,110 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Download metrics registry, the built-in {@link DownloadStatistics} sink is always registered.
+ * Disabled by default, enable with system property <code>faces.download.metrics=true</code>
+ * or {@link #setEnabled(boolean)}; download streams are measured only when enabled (or progress is requested).
+ * <pre>
+ * DownloadMetrics.addSink(sample -&gt; registry.timer("download", "type", sample.getContentType())
+ *         .record(sample.getDurationNanos(), TimeUnit.NANOSECONDS));
+ * </pre>
+ * @author supot.jdev
+ * @version 1.0
+ */
+@Slf4j
+public final class DownloadMetrics {
+	private static final DownloadStatistics STATISTICS = new DownloadStatistics();
+	private static final List<MetricsSink> SINKS = new CopyOnWriteArrayList<>();
+	private static volatile boolean enabled = Boolean.getBoolean("faces.download.metrics");
+
+	static {
+		SINKS.add(STATISTICS);
+	}
+
+	private DownloadMetrics() {
+	}
+
+	public static DownloadStatistics getStatistics() {
+		return STATISTICS;
+	}
+
+	public static void addSink(MetricsSink sink) {
+		if (sink != null) {
+			SINKS.add(sink);
+		}
+	}
+
+	public static void removeSink(MetricsSink sink) {
+		if (sink != STATISTICS) {
+			SINKS.remove(sink);
+		}
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		DownloadMetrics.enabled = enabled;
+	}
+
+	/**
+	 * Check the error is caused by the client closing the connection
+	 * (Tomcat ClientAbortException, Jetty EofException, broken pipe, connection reset)
+	 * @param error The write error
+	 * @return true when client abort
+	 */
+	public static boolean isClientAbort(Throwable error) {
+		// Cause chains may have cycles
+		Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Throwable cause = error; cause != null && visited.add(cause); cause = cause.getCause()) {
+			String name = cause.getClass().getSimpleName();
+			if (name.contains("ClientAbort") || name.contains("EofException") || cause instanceof ClosedChannelException) {
+				return true;
+			}
+
+			String message = cause.getMessage();
+			if (message != null && (message.contains("Broken pipe") || message.contains("Connection reset")
+					|| message.contains("connection was aborted"))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static void record(DownloadSample sample) {
+		for (MetricsSink sink : SINKS) {
+			try {
+				sink.record(sample);
+			} catch (RuntimeException ex) {
+				log.warn("Metrics sink {} failed", sink, ex);
+			}
+		}
+	}
+}
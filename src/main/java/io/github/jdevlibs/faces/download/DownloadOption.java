@@ -0,0 +1,228 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.io.Serializable;
+import java.util.function.Consumer;
+
+/**
+ * Download options for {@link io.github.jdevlibs.faces.FacesUtils} download methods
+ * @author supot.jdev
+ * @version 1.0
+ */
+public class DownloadOption implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private boolean attachment = true;
+	private boolean etag;
+	private boolean compress;
+	private boolean async;
+	private StreamMode streamMode = StreamMode.CHUNKED;
+	private int memoryThreshold = SpillBuffer.DEF_THRESHOLD;
+	private int readAhead;
+	private String digest;
+	private String progressId;
+	private String version;
+	private boolean memoryMapped;
+	private boolean precompressed;
+	private transient Consumer<String> digestListener;
+
+	/**
+	 * Content-Disposition attachment or inline. [default attachment]
+	 * @param attachment true for attachment, false for inline
+	 */
+	public DownloadOption attachment(boolean attachment) {
+		this.attachment = attachment;
+		return this;
+	}
+
+	/**
+	 * Emit strong ETag and answer 304 Not Modified when the client copy is current.
+	 * File use metadata (last modified and length), byte[] use content hash or {@link #version(String)}. [default false]
+	 * @param etag Enable conditional request
+	 */
+	public DownloadOption etag(boolean etag) {
+		this.etag = etag;
+		return this;
+	}
+
+	/**
+	 * Version of generated content (Ex. report id + data timestamp) used as the strong ETag instead of
+	 * hashing the content on every request, enable {@link #etag(boolean)}. [default null]
+	 * @param version The content version, the same version must always produce the same content
+	 */
+	public DownloadOption version(String version) {
+		this.version = version;
+		this.etag = (version != null || etag);
+		return this;
+	}
+
+	/**
+	 * Gzip compressible content (text, csv, json, xml, ...) when the client accept it.
+	 * Binary types (zip, xlsx, images, pdf) and range requests are sent as is. [default false]
+	 * @param compress Enable content-encoding negotiation
+	 */
+	public DownloadOption compress(boolean compress) {
+		this.compress = compress;
+		return this;
+	}
+
+	/**
+	 * Write the body with non-blocking I/O (AsyncContext + WriteListener) and release the request thread.
+	 * Require <code>async-supported</code> on FacesServlet, otherwise the body is written blocking. [default false]
+	 * @param async Enable async download
+	 */
+	public DownloadOption async(boolean async) {
+		this.async = async;
+		return this;
+	}
+
+	/**
+	 * Body mode of InputStream downloads. [default CHUNKED]
+	 * @param streamMode CHUNKED or BUFFERED (exact Content-Length)
+	 */
+	public DownloadOption streamMode(StreamMode streamMode) {
+		this.streamMode = streamMode;
+		return this;
+	}
+
+	/**
+	 * Maximum bytes kept in memory by BUFFERED mode, larger content is spilled to a temp file. [default 1 MB]
+	 * @param memoryThreshold Threshold in bytes
+	 */
+	public DownloadOption memoryThreshold(int memoryThreshold) {
+		this.memoryThreshold = memoryThreshold;
+		return this;
+	}
+
+	/**
+	 * Read InputStream content ahead on another thread while the response is written,
+	 * overlap the source and network latency. [default 0, disabled]
+	 * @param chunks Maximum chunks read ahead, Ex. 4
+	 */
+	public DownloadOption readAhead(int chunks) {
+		this.readAhead = chunks;
+		return this;
+	}
+
+	/**
+	 * Compute content digest in the same pass as the download and send it as Repr-Digest header
+	 * (known digest: byte[], BUFFERED stream or cached file) or trailer (computed while streaming).
+	 * File digests are cached by path and last modified, repeat downloads skip the hashing
+	 * and can still use sendfile. [default null, disabled]
+	 * @param algorithm The digest algorithm, Ex. {@link Digests#SHA_256}
+	 */
+	public DownloadOption digest(String algorithm) {
+		this.digest = algorithm;
+		return this;
+	}
+
+	/**
+	 * Receive the content digest (lower case hex), before the body when the digest is known,
+	 * otherwise when the body is completely written. Not called for partial (Range) downloads
+	 * of a file which digest is not cached yet.
+	 * @param listener The digest listener
+	 */
+	public DownloadOption onDigest(Consumer<String> listener) {
+		this.digestListener = listener;
+		return this;
+	}
+
+	/**
+	 * Report the download progress by {@link DownloadProgress#get(String)}, container sendfile is not used
+	 * so the written bytes can be counted. [default null, disabled]
+	 * @param progressId The progress id, Ex. {@link DownloadProgress#createId()}
+	 */
+	public DownloadOption progressId(String progressId) {
+		this.progressId = progressId;
+		return this;
+	}
+
+	/**
+	 * Read very large files from memory-mapped windows instead of read calls when the body is written
+	 * by this library (sendfile is still preferred when available). [default false]
+	 * @param memoryMapped Enable memory-mapped transfer
+	 */
+	public DownloadOption memoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+		return this;
+	}
+
+	/**
+	 * Serve up-to-date pre-compressed sibling of File downloads (<code>file.csv.br</code>, <code>file.csv.gz</code>)
+	 * when the client accept it, missing gzip siblings are created in background for the next downloads.
+	 * Not used with Range requests and {@link #digest(String)}. [default false]
+	 * @param precompressed Enable pre-compressed siblings
+	 */
+	public DownloadOption precompressed(boolean precompressed) {
+		this.precompressed = precompressed;
+		return this;
+	}
+
+	public boolean isAttachment() {
+		return attachment;
+	}
+
+	public boolean isEtag() {
+		return etag;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public boolean isCompress() {
+		return compress;
+	}
+
+	public boolean isAsync() {
+		return async;
+	}
+
+	public StreamMode getStreamMode() {
+		return streamMode;
+	}
+
+	public int getMemoryThreshold() {
+		return memoryThreshold;
+	}
+
+	public int getReadAhead() {
+		return readAhead;
+	}
+
+	public String getDigest() {
+		return digest;
+	}
+
+	public Consumer<String> getDigestListener() {
+		return digestListener;
+	}
+
+	public String getProgressId() {
+		return progressId;
+	}
+
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	public boolean isPrecompressed() {
+		return precompressed;
+	}
+}
@@ -0,0 +1,191 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a running download, registered by {@link DownloadOption#progressId(String)}
+ * and polled by the page (p:poll, p:remoteCommand) to show percent complete and throughput.
+ * <pre>
+ * // Action
+ * progressId = DownloadProgress.createId();
+ * FacesUtils.downloadFile(file, name, new DownloadOption().progressId(progressId));
+ *
+ * // p:remoteCommand / p:poll listener, callback args: percent, bytes, total, rate, done
+ * PFUtils.addDownloadProgress(progressId);
+ * </pre>
+ * Progress is kept for a while after the download is finished, so the last poll can see the result.
+ * Progress without update for a longer time (aborted download, stream never closed) is removed.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class DownloadProgress {
+	private static final long FINISHED_TTL 	= 5 * 60 * 1000L;
+	private static final long IDLE_TTL 		= 30 * 60 * 1000L;
+	private static final long PURGE_INTERVAL = 60 * 1000L;
+	private static final int MAX_ENTRIES 	= 10_000;
+
+	private static final Map<String, DownloadProgress> PROGRESS = new ConcurrentHashMap<>();
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static volatile long lastPurge = System.currentTimeMillis();
+
+	private final String id;
+	private final long startTime = System.currentTimeMillis();
+	private final AtomicLong bytes = new AtomicLong();
+	private volatile long total = -1;
+	private volatile long endTime = -1;
+	private volatile long lastUpdate = startTime;
+	private volatile boolean failed;
+
+	private DownloadProgress(String id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return New random progress id
+	 */
+	public static String createId() {
+		byte[] value = new byte[12];
+		RANDOM.nextBytes(value);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+	}
+
+	/**
+	 * Register progress of a new download, replace the previous progress of the same id
+	 * @param id The progress id
+	 * @return The progress
+	 */
+	public static DownloadProgress start(String id) {
+		purge(false);
+		if (PROGRESS.size() >= MAX_ENTRIES) {
+			purge(true);
+		}
+
+		DownloadProgress progress = new DownloadProgress(id);
+		if (PROGRESS.size() < MAX_ENTRIES || PROGRESS.containsKey(id)) {
+			PROGRESS.put(id, progress);
+		}
+		return progress;
+	}
+
+	/**
+	 * @param id The progress id
+	 * @return The progress, null when not found or expired
+	 */
+	public static DownloadProgress get(String id) {
+		purge(false);
+		return (id == null ? null : PROGRESS.get(id));
+	}
+
+	public static void remove(String id) {
+		if (id != null) {
+			PROGRESS.remove(id);
+		}
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * @return Content length, or -1 when unknown (CHUNKED stream)
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return Percent complete 0 - 100, or -1 when the length is unknown and not finished
+	 */
+	public int getPercent() {
+		if (isDone() && !failed) {
+			return 100;
+		}
+
+		long length = total;
+		if (length <= 0) {
+			return (length == 0 ? 100 : -1);
+		}
+		return (int) Math.min(100, bytes.get() * 100 / length);
+	}
+
+	/**
+	 * @return Average throughput in bytes per second
+	 */
+	public long getBytesPerSecond() {
+		long end = (endTime == -1 ? System.currentTimeMillis() : endTime);
+		long elapsed = Math.max(1, end - startTime);
+		return bytes.get() * 1000 / elapsed;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public boolean isDone() {
+		return endTime != -1;
+	}
+
+	/**
+	 * @return true when the download was failed or aborted by the client
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
+
+	void expect(long total) {
+		this.total = total;
+		this.lastUpdate = System.currentTimeMillis();
+	}
+
+	void written(long count) {
+		bytes.addAndGet(count);
+		lastUpdate = System.currentTimeMillis();
+	}
+
+	void finish(boolean failed) {
+		if (endTime == -1) {
+			this.failed = failed;
+			this.endTime = System.currentTimeMillis();
+		}
+	}
+
+	private static void purge(boolean force) {
+		long now = System.currentTimeMillis();
+		if (!force && now - lastPurge < PURGE_INTERVAL) {
+			return;
+		}
+
+		lastPurge = now;
+		PROGRESS.values().removeIf(progress -> progress.isExpired(now));
+	}
+
+	private boolean isExpired(long now) {
+		long end = endTime;
+		return (end != -1 ? now - end > FINISHED_TTL : now - lastUpdate > IDLE_TTL);
+	}
+}
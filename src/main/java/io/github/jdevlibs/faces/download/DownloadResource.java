@@ -0,0 +1,64 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Download content with a known length, can be written partially (HTTP Range).
+ * @author supot.jdev
+ * @version 1.0
+ */
+public interface DownloadResource extends Closeable {
+
+	/**
+	 * @return Content length in bytes
+	 */
+	long length();
+
+	/**
+	 * @return Last modified time in milliseconds, or -1 when unknown
+	 */
+	long lastModified();
+
+	/**
+	 * @return Strong quoted entity tag, or null when cannot be computed
+	 */
+	String entityTag();
+
+	/**
+	 * Digest of the whole content when it is known without reading the content
+	 * @param algorithm The digest algorithm, Ex. SHA-256
+	 * @return The digest, or null when it must be computed while the content is written
+	 */
+	default byte[] digest(String algorithm) {
+		return null;
+	}
+
+	/**
+	 * Write part of the content to output
+	 * @param output The target output
+	 * @param position Start position (inclusive)
+	 * @param count Number of bytes to write
+	 * @return Number of bytes written
+	 * @throws IOException When I/O error
+	 */
+	long writeTo(OutputStream output, long position, long count) throws IOException;
+}
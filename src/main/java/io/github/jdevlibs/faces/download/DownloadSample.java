@@ -0,0 +1,109 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+/**
+ * Completed download measurement
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class DownloadSample {
+	private final String contentType;
+	private final int status;
+	private final long contentLength;
+	private final long bytes;
+	private final long headerNanos;
+	private final long firstByteNanos;
+	private final long durationNanos;
+	private final boolean aborted;
+	private final boolean failed;
+
+	DownloadSample(String contentType, int status, long contentLength, long bytes, long headerNanos,
+			long firstByteNanos, long durationNanos, boolean aborted, boolean failed) {
+		this.contentType = contentType;
+		this.status = status;
+		this.contentLength = contentLength;
+		this.bytes = bytes;
+		this.headerNanos = headerNanos;
+		this.firstByteNanos = firstByteNanos;
+		this.durationNanos = durationNanos;
+		this.aborted = aborted;
+		this.failed = failed;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return Expected length, -1 when unknown
+	 */
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	/**
+	 * @return Bytes sent to the client
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return Header setup time in nanoseconds
+	 */
+	public long getHeaderNanos() {
+		return headerNanos;
+	}
+
+	/**
+	 * @return Time to first byte in nanoseconds, -1 when no body was written
+	 */
+	public long getFirstByteNanos() {
+		return firstByteNanos;
+	}
+
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	/**
+	 * @return true when the client closed the connection before the end
+	 */
+	public boolean isAborted() {
+		return aborted;
+	}
+
+	/**
+	 * @return true when failed with other error than client abort
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return Throughput in bytes per second
+	 */
+	public double getBytesPerSecond() {
+		return (durationNanos <= 0 ? 0 : bytes * 1e9 / durationNanos);
+	}
+}
@@ -0,0 +1,146 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory metrics sink, aggregate by content type and by size bucket
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class DownloadStatistics implements MetricsSink {
+	private static final long[] SIZE_BOUNDS 	= {64L * 1024, 1024L * 1024, 16L * 1024 * 1024, 128L * 1024 * 1024};
+	private static final String[] SIZE_NAMES 	= {"<64KB", "<1MB", "<16MB", "<128MB", ">=128MB"};
+
+	private final Stats total = new Stats();
+	private final Map<String, Stats> byContentType = new ConcurrentHashMap<>();
+	private final Map<String, Stats> bySize = new ConcurrentHashMap<>();
+
+	@Override
+	public void record(DownloadSample sample) {
+		String contentType = (sample.getContentType() == null ? "unknown" : sample.getContentType());
+		long size = Math.max(sample.getContentLength(), sample.getBytes());
+
+		total.record(sample);
+		byContentType.computeIfAbsent(contentType, k -> new Stats()).record(sample);
+		bySize.computeIfAbsent(sizeBucket(size), k -> new Stats()).record(sample);
+	}
+
+	public Stats getTotal() {
+		return total;
+	}
+
+	public Map<String, Stats> getByContentType() {
+		return Collections.unmodifiableMap(byContentType);
+	}
+
+	public Map<String, Stats> getBySize() {
+		return Collections.unmodifiableMap(bySize);
+	}
+
+	public void reset() {
+		total.reset();
+		byContentType.clear();
+		bySize.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "DownloadStatistics[total={" + total + "}, byContentType=" + byContentType + ", bySize=" + bySize + "]";
+	}
+
+	private static String sizeBucket(long size) {
+		for (int i = 0; i < SIZE_BOUNDS.length; i++) {
+			if (size < SIZE_BOUNDS[i]) {
+				return SIZE_NAMES[i];
+			}
+		}
+		return SIZE_NAMES[SIZE_NAMES.length - 1];
+	}
+
+	/**
+	 * Counters and histograms of one group
+	 */
+	public static final class Stats {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+		private final LongAdder aborts = new LongAdder();
+		private final LongAdder failures = new LongAdder();
+		private volatile Histogram duration = new Histogram();
+		private volatile Histogram firstByte = new Histogram();
+
+		private void record(DownloadSample sample) {
+			count.increment();
+			bytes.add(sample.getBytes());
+			if (sample.isAborted()) {
+				aborts.increment();
+			}
+			if (sample.isFailed()) {
+				failures.increment();
+			}
+			duration.record(TimeUnit.NANOSECONDS.toMillis(sample.getDurationNanos()));
+			if (sample.getFirstByteNanos() >= 0) {
+				firstByte.record(TimeUnit.NANOSECONDS.toMillis(sample.getFirstByteNanos()));
+			}
+		}
+
+		private void reset() {
+			count.reset();
+			bytes.reset();
+			aborts.reset();
+			failures.reset();
+			duration = new Histogram();
+			firstByte = new Histogram();
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getBytes() {
+			return bytes.sum();
+		}
+
+		public long getAborts() {
+			return aborts.sum();
+		}
+
+		public long getFailures() {
+			return failures.sum();
+		}
+
+		public Histogram getDuration() {
+			return duration;
+		}
+
+		public Histogram getFirstByte() {
+			return firstByte;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + getCount() + ", bytes=" + getBytes() + ", aborts=" + getAborts()
+					+ ", failures=" + getFailures() + ", duration={" + duration + "}, firstByte={" + firstByte + "}";
+		}
+	}
+}
@@ -0,0 +1,346 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measure one download (header setup, time to first byte, bytes, duration, abort),
+ * kept in the request attribute and reported to {@link DownloadMetrics} when finished.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class DownloadTracker {
+	private static final String ATTRIBUTE = DownloadTracker.class.getName();
+
+	private final String contentType;
+	private final DownloadProgress progress;
+	private final long startTime = System.nanoTime();
+	private final AtomicBoolean finished = new AtomicBoolean();
+	private volatile long headerTime = -1;
+	private volatile long firstByteTime = -1;
+	private volatile long contentLength = -1;
+	// Updated from the request thread and the async write callbacks
+	private final LongAdder bytes = new LongAdder();
+	private volatile Throwable error;
+	private volatile HttpServletResponse response;
+
+	private DownloadTracker(String contentType, DownloadProgress progress) {
+		this.contentType = contentType;
+		this.progress = progress;
+	}
+
+	public static DownloadTracker start(ServletRequest request, String contentType) {
+		return start(request, contentType, null);
+	}
+
+	/**
+	 * Start tracking the download of current request
+	 * @param request The current request
+	 * @param contentType The download content type
+	 * @param progressId The {@link DownloadProgress} id, can be null
+	 * @return The tracker, null when metrics are disabled and no progress is requested
+	 */
+	public static DownloadTracker start(ServletRequest request, String contentType, String progressId) {
+		if (!DownloadMetrics.isEnabled() && progressId == null) {
+			return null;
+		}
+
+		DownloadProgress progress = (progressId != null ? DownloadProgress.start(progressId) : null);
+		DownloadTracker tracker = new DownloadTracker(contentType, progress);
+		request.setAttribute(ATTRIBUTE, tracker);
+		return tracker;
+	}
+
+	public static DownloadTracker get(ServletRequest request) {
+		Object tracker = request.getAttribute(ATTRIBUTE);
+		return (tracker instanceof DownloadTracker ? (DownloadTracker) tracker : null);
+	}
+
+	/**
+	 * Response output stream measured by the tracker of the request (if any)
+	 * @param request The current request
+	 * @param response The current response
+	 * @return The response output stream
+	 * @throws IOException When I/O error
+	 */
+	public static OutputStream output(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		DownloadTracker tracker = get(request);
+		OutputStream output = response.getOutputStream();
+		if (tracker == null) {
+			return output;
+		}
+
+		tracker.response = response;
+		return new MeteredOutputStream(tracker, response, output);
+	}
+
+	/**
+	 * Response which output stream is measured by the tracker of the request (if any),
+	 * for callers that write the body themselves
+	 * @param request The current request
+	 * @param response The current response
+	 * @return The measured response, or the response when the request is not tracked
+	 */
+	public static HttpServletResponse monitor(HttpServletRequest request, HttpServletResponse response) {
+		DownloadTracker tracker = get(request);
+		if (tracker == null) {
+			return response;
+		}
+
+		tracker.response = response;
+		return new MeteredResponse(tracker, response);
+	}
+
+	/**
+	 * Report the download of the request when it was not finished by the writer (stream not closed),
+	 * called when the request ends
+	 * @param request The ending request
+	 */
+	public static void finishRequest(ServletRequest request) {
+		DownloadTracker tracker = get(request);
+		if (tracker == null || request.isAsyncStarted()) {
+			return;
+		}
+
+		HttpServletResponse current = tracker.response;
+		tracker.finish(current == null ? HttpServletResponse.SC_OK : current.getStatus());
+	}
+
+	public void headersWritten() {
+		if (headerTime == -1) {
+			headerTime = System.nanoTime();
+		}
+	}
+
+	/**
+	 * @return true when the progress is reported, the bytes must be written through the tracker
+	 */
+	public boolean isProgress() {
+		return progress != null;
+	}
+
+	public void expect(long contentLength) {
+		this.contentLength = contentLength;
+		if (progress != null) {
+			progress.expect(contentLength);
+		}
+	}
+
+	public void written(long count) {
+		if (firstByteTime == -1) {
+			firstByteTime = System.nanoTime();
+		}
+		bytes.add(count);
+		if (progress != null) {
+			progress.written(count);
+		}
+	}
+
+	public void fail(Throwable error) {
+		if (this.error == null) {
+			this.error = error;
+		}
+	}
+
+	/**
+	 * Report the measurement, only the first call is reported
+	 * @param status The response status
+	 */
+	public void finish(int status) {
+		if (!finished.compareAndSet(false, true)) {
+			return;
+		}
+
+		if (progress != null) {
+			progress.finish(error != null || status >= HttpServletResponse.SC_BAD_REQUEST);
+		}
+		if (!DownloadMetrics.isEnabled()) {
+			return;
+		}
+
+		long end = System.nanoTime();
+		boolean aborted = error != null && DownloadMetrics.isClientAbort(error);
+		DownloadMetrics.record(new DownloadSample(contentType, status, contentLength, bytes.sum(),
+				(headerTime == -1 ? 0 : headerTime - startTime),
+				(firstByteTime == -1 ? -1 : firstByteTime - startTime),
+				end - startTime, aborted, error != null && !aborted));
+	}
+
+	public void finish(HttpServletResponse response) {
+		finish(response.getStatus());
+	}
+
+	/**
+	 * Count written bytes, write errors are recorded as abort or failure
+	 */
+	private static final class MeteredOutputStream extends OutputStream {
+		private final DownloadTracker tracker;
+		private final HttpServletResponse response;
+		private final OutputStream output;
+
+		private MeteredOutputStream(DownloadTracker tracker, HttpServletResponse response, OutputStream output) {
+			this.tracker = tracker;
+			this.response = response;
+			this.output = output;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			try {
+				output.write(b);
+				tracker.written(1);
+			} catch (IOException ex) {
+				tracker.fail(ex);
+				throw ex;
+			}
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			try {
+				output.write(bytes, offset, length);
+				tracker.written(length);
+			} catch (IOException ex) {
+				tracker.fail(ex);
+				throw ex;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			try {
+				output.flush();
+			} catch (IOException ex) {
+				tracker.fail(ex);
+				throw ex;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				output.close();
+			} catch (IOException ex) {
+				tracker.fail(ex);
+				throw ex;
+			} finally {
+				tracker.finish(response);
+			}
+		}
+	}
+
+	private static final class MeteredResponse extends HttpServletResponseWrapper {
+		private final DownloadTracker tracker;
+		private ServletOutputStream output;
+
+		private MeteredResponse(DownloadTracker tracker, HttpServletResponse response) {
+			super(response);
+			this.tracker = tracker;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (output == null) {
+				output = new MeteredServletOutputStream(tracker, (HttpServletResponse) getResponse(),
+						super.getOutputStream());
+			}
+			return output;
+		}
+	}
+
+	/**
+	 * Count written bytes of the servlet stream, write errors are recorded as abort or failure
+	 */
+	private static final class MeteredServletOutputStream extends ServletOutputStream {
+		private final DownloadTracker tracker;
+		private final HttpServletResponse response;
+		private final ServletOutputStream output;
+
+		private MeteredServletOutputStream(DownloadTracker tracker, HttpServletResponse response,
+				ServletOutputStream output) {
+			this.tracker = tracker;
+			this.response = response;
+			this.output = output;
+		}
+
+		@Override
+		public boolean isReady() {
+			return output.isReady();
+		}
+
+		@Override
+		public void setWriteListener(WriteListener listener) {
+			output.setWriteListener(listener);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			try {
+				output.write(b);
+				tracker.written(1);
+			} catch (IOException ex) {
+				tracker.fail(ex);
+				throw ex;
+			}
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			try {
+				output.write(bytes, offset, length);
+				tracker.written(length);
+			} catch (IOException ex) {
+				tracker.fail(ex);
+				throw ex;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			try {
+				output.flush();
+			} catch (IOException ex) {
+				tracker.fail(ex);
+				throw ex;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				output.close();
+			} catch (IOException ex) {
+				tracker.fail(ex);
+				throw ex;
+			} finally {
+				tracker.finish(response);
+			}
+		}
+	}
+}
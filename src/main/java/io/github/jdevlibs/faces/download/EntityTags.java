@@ -0,0 +1,167 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import io.github.jdevlibs.utils.LruCache;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Strong entity tag (ETag) builder and matcher
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class EntityTags {
+	private static final int HASH_BYTES = 16;
+	private static final LruCache<ContentKey, String> CONTENT_TAGS = new LruCache<>(256);
+
+	private EntityTags() {
+	}
+
+	/**
+	 * Build entity tag from file metadata
+	 * @param length The file length
+	 * @param lastModified The file last modified time
+	 * @return Quoted entity tag, or null when last modified is unknown
+	 */
+	public static String forFile(long length, long lastModified) {
+		if (lastModified <= 0) {
+			return null;
+		}
+		return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+	}
+
+	/**
+	 * Build entity tag from SHA-256 of the content. The tag is cached by the array instance and length,
+	 * the content must not be changed after download. Content generated on every request should use
+	 * {@link #forVersion(String)} instead.
+	 * @param content The content
+	 * @return Quoted entity tag
+	 */
+	public static String forContent(byte[] content) {
+		return CONTENT_TAGS.computeIfAbsent(new ContentKey(content), key -> hash(content));
+	}
+
+	/**
+	 * Build entity tag from the content version
+	 * @param version The content version, Ex. report-42-1700000000
+	 * @return Quoted entity tag, the version as is when it is valid ETag characters otherwise the version hash
+	 */
+	public static String forVersion(String version) {
+		for (int i = 0; i < version.length(); i++) {
+			char ch = version.charAt(i);
+			if (ch <= 0x20 || ch == '"' || ch >= 0x7F) {
+				return hash(version.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		return "\"" + version + "\"";
+	}
+
+	/**
+	 * Build entity tag of another representation (content coding) of the same content
+	 * @param etag The quoted entity tag
+	 * @param coding The content coding, Ex. gzip
+	 * @return Quoted entity tag, Ex. "abc-gzip"
+	 */
+	public static String variant(String etag, String coding) {
+		if (etag == null || etag.length() < 2) {
+			return etag;
+		}
+		return etag.substring(0, etag.length() - 1) + "-" + coding + "\"";
+	}
+
+	/**
+	 * Check entity tag is listed in If-None-Match (weak comparison) or If-Range/If-Match (strong comparison)
+	 * @param header The request header value, Ex. "a", W/"b" or *
+	 * @param etag The current quoted entity tag
+	 * @param weak true for weak comparison
+	 * @return true when matched
+	 */
+	public static boolean matches(String header, String etag, boolean weak) {
+		if (header == null || etag == null) {
+			return false;
+		}
+
+		String value = header.trim();
+		if ("*".equals(value)) {
+			return true;
+		}
+
+		for (String tag : value.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) {
+				if (!weak) {
+					continue;
+				}
+				tag = tag.substring(2);
+			}
+			if (tag.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String hash(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+			return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, HASH_BYTES)) + "\"";
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Identity key of the content, does not keep the content from garbage collected
+	 */
+	private static final class ContentKey {
+		private final WeakReference<byte[]> content;
+		private final int length;
+		private final int hash;
+
+		private ContentKey(byte[] content) {
+			this.content = new WeakReference<>(content);
+			this.length = content.length;
+			this.hash = System.identityHashCode(content);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ContentKey)) {
+				return false;
+			}
+
+			ContentKey other = (ContentKey) obj;
+			byte[] value = content.get();
+			return value != null && value == other.content.get() && length == other.length;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File download content, the file channel is opened on create and closed by {@link #close()}.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public class FileResource implements DownloadResource {
+	private final File file;
+	private final FileChannel channel;
+	private final long length;
+	private final long lastModified;
+
+	public FileResource(File file) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.length = channel.size();
+		this.lastModified = file.lastModified();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public FileChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * @return true when the file is kept after the resource is closed, required by container sendfile
+	 */
+	public boolean isPersistent() {
+		return true;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+
+	@Override
+	public long lastModified() {
+		return (lastModified > 0 ? lastModified : -1);
+	}
+
+	@Override
+	public String entityTag() {
+		return EntityTags.forFile(length, lastModified);
+	}
+
+	@Override
+	public byte[] digest(String algorithm) {
+		// Digests of temp files are not cached, the path may be reused by another file
+		return (isPersistent() ? Digests.getCached(file, algorithm) : null);
+	}
+
+	@Override
+	public long writeTo(OutputStream output, long position, long count) throws IOException {
+		return FileTransfer.transfer(channel, position, count, output);
+	}
+
+	/**
+	 * Read the file region into the array without an intermediate stream
+	 * @param bytes The target array
+	 * @param position Start position (inclusive)
+	 * @param length Maximum number of bytes
+	 * @return Number of bytes read, -1 at end of file
+	 * @throws IOException When I/O error
+	 */
+	public int read(byte[] bytes, long position, int length) throws IOException {
+		return FileTransfer.read(channel, bytes, position, length);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,256 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import jakarta.servlet.ServletRequestWrapper;
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File-aware transfer engine for downloads.
+ * Use the container sendfile support when available, then {@link FileChannel#transferTo}
+ * when the output is a channel, otherwise fall back to a large-chunk copy through {@link BufferPool}
+ * or memory-mapped windows ({@link #transferMapped(FileChannel, long, long, OutputStream)}).
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class FileTransfer {
+	// Same threshold as Tomcat DefaultServlet, small files are faster through the buffer
+	private static final long SENDFILE_MIN_SIZE 	= 48 * 1024L;
+	private static final String SENDFILE_SUPPORT 	= "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME 	= "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START 		= "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END 		= "org.apache.tomcat.sendfile.end";
+	private static final long MIN_MAP_WINDOW 		= 4 * 1024 * 1024L;
+	private static final long MAX_MAP_WINDOW 		= 256 * 1024 * 1024L;
+	private static final MethodHandle UNMAPPER 		= createUnmapper();
+
+	private FileTransfer() {
+	}
+
+	/**
+	 * Check the container can send the file itself (Tomcat NIO/NIO2/APR sendfile)
+	 * @param request The current request
+	 * @param response The current response
+	 * @param count Number of bytes to be sent
+	 * @return true when {@link #sendfile(HttpServletRequest, File, long, long)} can be used
+	 */
+	public static boolean isSendfileSupported(HttpServletRequest request, HttpServletResponse response, long count) {
+		if (count < SENDFILE_MIN_SIZE || request instanceof ServletRequestWrapper
+				|| response instanceof ServletResponseWrapper || response.isCommitted()) {
+			return false;
+		}
+
+		return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT));
+	}
+
+	/**
+	 * Hand over the file region to the container, the body must not be written by the caller.
+	 * @param request The current request
+	 * @param file The file to send
+	 * @param position Start position (inclusive)
+	 * @param count Number of bytes to be sent
+	 * @throws IOException When cannot resolve the file path
+	 */
+	public static void sendfile(HttpServletRequest request, File file, long position, long count) throws IOException {
+		request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+		request.setAttribute(SENDFILE_START, position);
+		request.setAttribute(SENDFILE_END, position + count);
+	}
+
+	public static long transfer(File file, long position, long count, OutputStream output) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return transfer(channel, position, count, output);
+		}
+	}
+
+	/**
+	 * Write the file region to output
+	 * @param channel The source file channel
+	 * @param position Start position (inclusive)
+	 * @param count Number of bytes to write
+	 * @param output The target output
+	 * @return Number of bytes written
+	 * @throws IOException When I/O error
+	 */
+	public static long transfer(FileChannel channel, long position, long count, OutputStream output)
+			throws IOException {
+		if (output instanceof WritableByteChannel) {
+			return transferTo(channel, position, count, (WritableByteChannel) output);
+		}
+
+		return copy(channel, position, count, output);
+	}
+
+	/**
+	 * Write the file region to output from memory-mapped windows, the file is read by page faults
+	 * instead of read system calls. Each window is unmapped as soon as it is written.
+	 * @param channel The source file channel
+	 * @param position Start position (inclusive)
+	 * @param count Number of bytes to write
+	 * @param output The target output
+	 * @return Number of bytes written
+	 * @throws IOException When I/O error
+	 */
+	public static long transferMapped(FileChannel channel, long position, long count, OutputStream output)
+			throws IOException {
+		count = Math.min(count, Math.max(0, channel.size() - position));
+		long window = mapWindowSize(count);
+		ByteBuffer array = (output instanceof WritableByteChannel
+				? null : BufferPool.heap().acquire(BufferPool.sizeFor(count)));
+		try {
+			long written = 0;
+			while (written < count) {
+				long size = Math.min(window, count - written);
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position + written, size);
+				try {
+					write(mapped, array, output);
+				} finally {
+					unmap(mapped);
+				}
+				written += size;
+			}
+
+			return written;
+		} finally {
+			if (array != null) {
+				BufferPool.heap().release(array);
+			}
+		}
+	}
+
+	/**
+	 * Window size by the transfer size, 1/16 of the size between 4 MB and 256 MB
+	 * (fewer map calls for large files, bounded address space per download)
+	 */
+	static long mapWindowSize(long count) {
+		long window = Long.highestOneBit(Math.max(1, count / 16));
+		return Math.max(MIN_MAP_WINDOW, Math.min(MAX_MAP_WINDOW, window));
+	}
+
+	private static void write(ByteBuffer mapped, ByteBuffer array, OutputStream output) throws IOException {
+		if (array == null) {
+			WritableByteChannel target = (WritableByteChannel) output;
+			while (mapped.hasRemaining()) {
+				target.write(mapped);
+			}
+			return;
+		}
+
+		byte[] bytes = array.array();
+		while (mapped.hasRemaining()) {
+			int size = Math.min(bytes.length, mapped.remaining());
+			mapped.get(bytes, 0, size);
+			output.write(bytes, 0, size);
+		}
+	}
+
+	/**
+	 * Release the mapping now instead of waiting for GC, mapped windows of large files
+	 * otherwise stay in the address space until the buffer is collected.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		if (UNMAPPER == null) {
+			return;
+		}
+
+		try {
+			UNMAPPER.invokeExact((ByteBuffer) buffer);
+		} catch (Throwable ex) {
+			// Unmapped by GC
+		}
+	}
+
+	private static MethodHandle createUnmapper() {
+		// sun.misc.Unsafe.invokeCleaner(ByteBuffer), Java 9+ (jdk.unsupported module)
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+			MethodHandle handle = MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner",
+					MethodType.methodType(void.class, ByteBuffer.class));
+			return handle.bindTo(unsafe);
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			return null;
+		}
+	}
+
+	private static long transferTo(FileChannel channel, long position, long count, WritableByteChannel output)
+			throws IOException {
+		long written = 0;
+		while (written < count) {
+			long size = channel.transferTo(position + written, count - written, output);
+			if (size <= 0) {
+				break;
+			}
+			written += size;
+		}
+
+		return written;
+	}
+
+	/**
+	 * Read the file region straight into the array
+	 * @param channel The source file channel
+	 * @param bytes The target array
+	 * @param position Start position (inclusive)
+	 * @param length Maximum number of bytes
+	 * @return Number of bytes read, -1 at end of file
+	 * @throws IOException When I/O error
+	 */
+	public static int read(FileChannel channel, byte[] bytes, long position, int length) throws IOException {
+		return channel.read(ByteBuffer.wrap(bytes, 0, length), position);
+	}
+
+	private static long copy(FileChannel channel, long position, long count, OutputStream output)
+			throws IOException {
+		// One copy, the file is read into the leased array and written from it
+		ByteBuffer array = BufferPool.heap().acquire(BufferPool.sizeFor(count));
+		try {
+			byte[] bytes = array.array();
+			long written = 0;
+			while (written < count) {
+				int read = read(channel, bytes, position + written, (int) Math.min(bytes.length, count - written));
+				if (read == -1) {
+					break;
+				}
+				output.write(bytes, 0, read);
+				written += read;
+			}
+
+			return written;
+		} finally {
+			BufferPool.heap().release(array);
+		}
+	}
+}
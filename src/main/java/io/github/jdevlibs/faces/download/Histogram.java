@@ -0,0 +1,109 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed bucket histogram of milliseconds
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class Histogram {
+	private static final long[] BOUNDS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000,
+			Long.MAX_VALUE};
+
+	private final LongAdder[] counts = new LongAdder[BOUNDS.length];
+	private final LongAdder sum = new LongAdder();
+
+	Histogram() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new LongAdder();
+		}
+	}
+
+	void record(long millis) {
+		for (int i = 0; i < BOUNDS.length; i++) {
+			if (millis <= BOUNDS[i]) {
+				counts[i].increment();
+				break;
+			}
+		}
+		sum.add(millis);
+	}
+
+	/**
+	 * @return Upper bound (inclusive) in milliseconds of each bucket, the last bucket is unbounded
+	 */
+	public long[] getBounds() {
+		return BOUNDS.clone();
+	}
+
+	public long[] getCounts() {
+		long[] values = new long[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			values[i] = counts[i].sum();
+		}
+		return values;
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LongAdder value : counts) {
+			count += value.sum();
+		}
+		return count;
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * Approximate percentile as the upper bound of the bucket
+	 * @param percentile 0 - 100
+	 * @return Milliseconds, -1 when empty
+	 */
+	public long getPercentile(double percentile) {
+		long[] values = getCounts();
+		long total = 0;
+		for (long value : values) {
+			total += value;
+		}
+		if (total == 0) {
+			return -1;
+		}
+
+		long rank = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < values.length; i++) {
+			seen += values[i];
+			if (seen >= rank) {
+				return BOUNDS[i];
+			}
+		}
+		return BOUNDS[BOUNDS.length - 1];
+	}
+
+	@Override
+	public String toString() {
+		long count = getCount();
+		return "count=" + count + ", avg=" + (count == 0 ? 0 : getSum() / count) + "ms, p50=" + getPercentile(50)
+				+ "ms, p95=" + getPercentile(95) + "ms";
+	}
+}
@@ -0,0 +1,127 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * HTTP Range header parser (RFC 9110 section 14)
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class HttpRanges {
+	private static final String BYTES_UNIT 	= "bytes=";
+	private static final int MAX_RANGES 	= 16;
+
+	private HttpRanges() {
+	}
+
+	/**
+	 * Parse Range header value.
+	 * Overlapping and adjacent ranges are coalesced, so no byte is sent twice.
+	 * @param header The Range header value, Ex. bytes=0-499,1000-
+	 * @param length The complete content length
+	 * @return null when the header must be ignored (send full content),
+	 * empty list when no range is satisfiable (416) otherwise sorted ranges
+	 */
+	public static List<ByteRange> parse(String header, long length) {
+		if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+			return null;
+		}
+
+		String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+		if (specs.length > MAX_RANGES) {
+			return null;
+		}
+
+		List<ByteRange> ranges = new ArrayList<>(specs.length);
+		for (String spec : specs) {
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if (dash == -1) {
+				return null;
+			}
+
+			long first = parseNumber(spec.substring(0, dash));
+			long last = parseNumber(spec.substring(dash + 1));
+			if (dash == 0) {
+				// Suffix range: last N bytes
+				if (last == -1) {
+					return null;
+				}
+				if (last > 0 && length > 0) {
+					ranges.add(new ByteRange(Math.max(0, length - last), length - 1));
+				}
+			} else {
+				if (first == -1 || (dash < spec.length() - 1 && last == -1)) {
+					return null;
+				}
+				if (last != -1 && last < first) {
+					return null;
+				}
+				if (first < length) {
+					long end = (last == -1 ? length - 1 : Math.min(last, length - 1));
+					ranges.add(new ByteRange(first, end));
+				}
+			}
+		}
+
+		return coalesce(ranges);
+	}
+
+	private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+		if (ranges.size() <= 1) {
+			return ranges;
+		}
+
+		List<ByteRange> sorted = new ArrayList<>(ranges);
+		sorted.sort(Comparator.comparingLong(ByteRange::getStart));
+
+		List<ByteRange> results = new ArrayList<>(sorted.size());
+		ByteRange current = sorted.get(0);
+		for (int i = 1; i < sorted.size(); i++) {
+			ByteRange next = sorted.get(i);
+			if (next.getStart() <= current.getEnd() + 1) {
+				current = new ByteRange(current.getStart(), Math.max(current.getEnd(), next.getEnd()));
+			} else {
+				results.add(current);
+				current = next;
+			}
+		}
+		results.add(current);
+
+		return Collections.unmodifiableList(results);
+	}
+
+	private static long parseNumber(String value) {
+		if (value.isEmpty() || value.length() > 18) {
+			return -1;
+		}
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+		}
+		return Long.parseLong(value);
+	}
+}
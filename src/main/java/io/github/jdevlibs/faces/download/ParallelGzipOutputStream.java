@@ -0,0 +1,242 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Block-parallel gzip output stream (same approach as pigz).
+ * Input is split into 128 KB blocks, each block is deflated on a shared worker pool
+ * using the last 32 KB of the previous block as dictionary and ended with a sync flush,
+ * so the concatenated blocks form a single valid deflate stream.
+ * The last block is compressed on the caller thread, small outputs never use the pool.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public class ParallelGzipOutputStream extends FilterOutputStream {
+	private static final int BLOCK_SIZE 		= 128 * 1024;
+	private static final int DICT_SIZE 			= 32 * 1024;
+	private static final int THREADS 			= Math.max(1, Runtime.getRuntime().availableProcessors());
+	private static final byte[] GZIP_HEADER 	= {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+	private static final ExecutorService EXECUTOR;
+	private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<>();
+
+	static {
+		AtomicInteger counter = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), r -> {
+					Thread thread = new Thread(r, "faces-gzip-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		// Idle threads end, they must not keep the web application class loader
+		executor.allowCoreThreadTimeOut(true);
+		EXECUTOR = executor;
+	}
+
+	/**
+	 * Stop the compression threads, called when the web application is stopped
+	 */
+	static void shutdown() {
+		EXECUTOR.shutdownNow();
+	}
+
+	private final int level;
+	private final int maxInFlight;
+	private final CRC32 crc = new CRC32();
+	private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+	private byte[] block = new byte[BLOCK_SIZE];
+	private int blockLength;
+	private byte[] dictionary;
+	private long totalLength;
+	private boolean finished;
+
+	public ParallelGzipOutputStream(OutputStream out) throws IOException {
+		this(out, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	public ParallelGzipOutputStream(OutputStream out, int level) throws IOException {
+		super(out);
+		this.level = level;
+		this.maxInFlight = THREADS * 2;
+		out.write(GZIP_HEADER);
+	}
+
+	/**
+	 * @return true when the machine has more than one core to compress in parallel
+	 */
+	public static boolean isParallel() {
+		return THREADS > 1;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] {(byte) b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		if (finished) {
+			throw new IOException("Stream already finished");
+		}
+
+		while (length > 0) {
+			int size = Math.min(length, BLOCK_SIZE - blockLength);
+			System.arraycopy(bytes, offset, block, blockLength, size);
+			blockLength += size;
+			offset += size;
+			length -= size;
+			if (blockLength == BLOCK_SIZE) {
+				submitBlock();
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (!finished && blockLength > 0) {
+			submitBlock();
+		}
+		drain(0);
+		out.flush();
+	}
+
+	/**
+	 * Write remaining blocks and gzip trailer without closing the underlying stream
+	 * @throws IOException When I/O error
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+
+		finished = true;
+		drain(0);
+		crc.update(block, 0, blockLength);
+		totalLength += blockLength;
+
+		Deflater deflater = new Deflater(level, true);
+		try {
+			out.write(deflate(deflater, block, blockLength, dictionary, true));
+		} finally {
+			deflater.end();
+		}
+
+		writeInt((int) crc.getValue());
+		writeInt((int) totalLength);
+		block = null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void submitBlock() throws IOException {
+		final byte[] input = block;
+		final int inputLength = blockLength;
+		final byte[] dict = dictionary;
+
+		crc.update(input, 0, inputLength);
+		totalLength += inputLength;
+		dictionary = (inputLength >= DICT_SIZE ? Arrays.copyOfRange(input, inputLength - DICT_SIZE, inputLength)
+				: Arrays.copyOf(input, inputLength));
+
+		pending.add(EXECUTOR.submit(() -> deflate(workerDeflater(), input, inputLength, dict, false)));
+		block = new byte[BLOCK_SIZE];
+		blockLength = 0;
+
+		drain(maxInFlight);
+	}
+
+	private void drain(int maxPending) throws IOException {
+		while (pending.size() > maxPending) {
+			try {
+				out.write(pending.removeFirst().get());
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Compression interrupted", ex);
+			} catch (ExecutionException ex) {
+				throw new IOException("Compression failed", ex.getCause());
+			}
+		}
+	}
+
+	private void writeInt(int value) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >> 8) & 0xff);
+		out.write((value >> 16) & 0xff);
+		out.write((value >> 24) & 0xff);
+	}
+
+	private Deflater workerDeflater() {
+		Deflater deflater = DEFLATERS.get();
+		if (deflater == null) {
+			deflater = new Deflater(level, true);
+			DEFLATERS.set(deflater);
+		} else {
+			deflater.reset();
+			deflater.setLevel(level);
+		}
+		return deflater;
+	}
+
+	private static byte[] deflate(Deflater deflater, byte[] input, int length, byte[] dict, boolean last) {
+		if (dict != null && dict.length > 0) {
+			deflater.setDictionary(dict);
+		}
+		deflater.setInput(input, 0, length);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream(length / 2 + 64);
+		byte[] buffer = new byte[16 * 1024];
+		if (last) {
+			deflater.finish();
+			while (!deflater.finished()) {
+				int size = deflater.deflate(buffer);
+				output.write(buffer, 0, size);
+			}
+		} else {
+			int size;
+			do {
+				size = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+				output.write(buffer, 0, size);
+			} while (size == buffer.length);
+		}
+
+		return output.toByteArray();
+	}
+}
@@ -0,0 +1,250 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import io.github.jdevlibs.faces.JSFMimeTypes;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-compressed sibling files (<code>report.csv.gz</code>, <code>report.csv.br</code>) of static downloads.
+ * A sibling is used only when it is at least as new as the file. Missing gzip siblings are created
+ * by a background compactor, brotli siblings are used when provided (no JDK encoder).
+ * A directory where a sibling cannot be created (Ex. read-only) is not tried again for
+ * <code>faces.download.precompress.retry</code> milliseconds (default 10 minutes).
+ * @author supot.jdev
+ * @version 1.0
+ */
+@Slf4j
+public final class PrecompressedFiles {
+	private static final String GZIP_SUFFIX 	= ".gz";
+	private static final String BROTLI_SUFFIX 	= ".br";
+	private static final long MIN_SIZE 			= 1024;
+	private static final int MAX_QUEUED 		= 64;
+	private static final int BUFFER_SIZE 		= 64 * 1024;
+	private static final long RETRY_DELAY 		= Long.getLong("faces.download.precompress.retry", 10 * 60 * 1000L);
+	private static final int MAX_FAILED 		= 1000;
+
+	private static final Set<String> PENDING = ConcurrentHashMap.newKeySet();
+	// Directory of the failed compaction and the time it is tried again
+	private static final Map<String, Long> FAILED = new ConcurrentHashMap<>();
+	private static final ExecutorService COMPACTOR = createCompactor();
+
+	private PrecompressedFiles() {
+	}
+
+	/**
+	 * Select the sibling accepted by the client, brotli is preferred over gzip
+	 * @param file The source file
+	 * @param acceptEncoding The Accept-Encoding header value
+	 * @return The up-to-date sibling file, or null when none is usable
+	 */
+	public static File select(File file, String acceptEncoding) {
+		if (ContentEncodings.accepts(acceptEncoding, ContentEncodings.BROTLI)) {
+			File sibling = sibling(file, ContentEncodings.BROTLI);
+			if (isUpToDate(file, sibling)) {
+				return sibling;
+			}
+		}
+
+		if (ContentEncodings.accepts(acceptEncoding, ContentEncodings.GZIP)) {
+			File sibling = sibling(file, ContentEncodings.GZIP);
+			if (isUpToDate(file, sibling)) {
+				return sibling;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param file The source file
+	 * @param coding The content coding, gzip or br
+	 * @return Sibling file (may not exist)
+	 */
+	public static File sibling(File file, String coding) {
+		String suffix = (ContentEncodings.BROTLI.equals(coding) ? BROTLI_SUFFIX : GZIP_SUFFIX);
+		return new File(file.getPath() + suffix);
+	}
+
+	/**
+	 * @param sibling The sibling file
+	 * @return Content coding of the sibling, gzip or br
+	 */
+	public static String codingOf(File sibling) {
+		return (sibling.getName().endsWith(BROTLI_SUFFIX) ? ContentEncodings.BROTLI : ContentEncodings.GZIP);
+	}
+
+	/**
+	 * @param file The source file
+	 * @param sibling The sibling file
+	 * @return true when the sibling exists and is at least as new as the file
+	 */
+	public static boolean isUpToDate(File file, File sibling) {
+		long modified = sibling.lastModified();
+		return modified > 0 && modified >= file.lastModified();
+	}
+
+	/**
+	 * Create the gzip sibling in background when missing or stale, does nothing for small or
+	 * not compressible files
+	 * @param file The source file
+	 * @return true when the compaction is queued
+	 */
+	public static boolean schedule(File file) {
+		if (!isCompactable(file) || isUpToDate(file, sibling(file, ContentEncodings.GZIP))) {
+			return false;
+		}
+
+		String path = file.getAbsolutePath();
+		String directory = file.getAbsoluteFile().getParent();
+		if (isFailed(directory) || !PENDING.add(path)) {
+			return false;
+		}
+
+		try {
+			COMPACTOR.execute(() -> {
+				try {
+					compress(file);
+				} catch (IOException ex) {
+					failed(directory, path, ex);
+				} finally {
+					PENDING.remove(path);
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException ex) {
+			// Compactor is busy, try again with the next download
+			PENDING.remove(path);
+			return false;
+		}
+	}
+
+	/**
+	 * Create the gzip sibling (best compression) now, the sibling is written to a temp file
+	 * then moved, so a partial sibling is never served
+	 * @param file The source file
+	 * @return The gzip sibling
+	 * @throws IOException When I/O error
+	 */
+	public static File compress(File file) throws IOException {
+		File sibling = sibling(file, ContentEncodings.GZIP);
+		long lastModified = file.lastModified();
+		Path directory = file.getAbsoluteFile().toPath().getParent();
+		Path temp = Files.createTempFile(directory, "." + file.getName() + ".", ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+				 OutputStream output = new BestGzipOutputStream(
+						 new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+				FileTransfer.transfer(channel, 0, channel.size(), output);
+			}
+
+			// Same time as the source, the sibling stay up to date until the source is changed
+			temp.toFile().setLastModified(lastModified);
+			move(temp, sibling.toPath());
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		return sibling;
+	}
+
+	private static boolean isFailed(String directory) {
+		Long retryTime = FAILED.get(directory);
+		if (retryTime == null) {
+			return false;
+		}
+		if (System.currentTimeMillis() < retryTime) {
+			return true;
+		}
+		FAILED.remove(directory, retryTime);
+		return false;
+	}
+
+	private static void failed(String directory, String path, IOException ex) {
+		if (FAILED.size() >= MAX_FAILED) {
+			FAILED.clear();
+		}
+		// Logged once per retry period, every download of the directory would fail the same way
+		if (FAILED.put(directory, System.currentTimeMillis() + RETRY_DELAY) == null) {
+			log.warn("Cannot create gzip sibling of {}, directory skipped for {} ms : {}", path, RETRY_DELAY, ex.toString());
+			log.debug("Gzip sibling failure", ex);
+		}
+	}
+
+	private static boolean isCompactable(File file) {
+		return file.isFile() && file.length() >= MIN_SIZE && JSFMimeTypes.isCompressible(file.getName());
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException ex) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Stop the compaction thread, called when the web application is stopped
+	 */
+	static void shutdown() {
+		COMPACTOR.shutdownNow();
+	}
+
+	private static ExecutorService createCompactor() {
+		// One low priority thread, compaction must not compete with the request threads
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(MAX_QUEUED), r -> {
+					Thread thread = new Thread(r, "faces-precompress");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Gzip with best compression, the sibling is compressed once and served many times
+	 */
+	private static final class BestGzipOutputStream extends GZIPOutputStream {
+
+		private BestGzipOutputStream(OutputStream output) throws IOException {
+			super(output, BUFFER_SIZE);
+			def.setLevel(Deflater.BEST_COMPRESSION);
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipelined copy for latency-bound sources (NFS, object storage).
+ * A reader thread fills pooled buffers from the source while the caller thread drains
+ * filled buffers to the output, the number of in-flight chunks is bounded.
+ * At most <code>faces.download.readAhead.threads</code> readers run at the same time (default 64),
+ * the copy is done on the caller thread when all readers are busy.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class ReadAheadStreamer {
+	private static final Chunk END = new Chunk(null, 0, null);
+	private static final int MAX_READERS = Integer.getInteger("faces.download.readAhead.threads", 64);
+	private static final long OFFER_WAIT = 100;
+	private static final ThreadPoolExecutor READERS;
+
+	static {
+		AtomicInteger counter = new AtomicInteger();
+		READERS = new ThreadPoolExecutor(0, MAX_READERS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+			Thread thread = new Thread(r, "faces-read-ahead-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private ReadAheadStreamer() {
+	}
+
+	/**
+	 * Stop the reader threads, called when the web application is stopped
+	 */
+	static void shutdown() {
+		READERS.shutdownNow();
+	}
+
+	/**
+	 * Copy input to output with read-ahead, input and output are not closed.
+	 * The reader is finished when this method returns, the input can be closed by the caller.
+	 * @param input The source
+	 * @param output The target
+	 * @param contentLength The content length, -1 when unknown
+	 * @param chunks Maximum filled chunks waiting to be written (at least 1)
+	 * @return Number of bytes written
+	 * @throws IOException When read or write failed
+	 */
+	public static long stream(InputStream input, OutputStream output, long contentLength, int chunks)
+			throws IOException {
+		BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(Math.max(1, chunks));
+		int bufferSize = BufferPool.sizeFor(contentLength);
+		AtomicBoolean stopped = new AtomicBoolean();
+		Future<?> reader;
+		try {
+			reader = READERS.submit(() -> read(input, queue, bufferSize, stopped));
+		} catch (RejectedExecutionException ex) {
+			// All readers busy
+			return copy(input, output, bufferSize);
+		}
+
+		long size = 0;
+		try {
+			while (true) {
+				Chunk chunk = queue.take();
+				if (chunk == END) {
+					return size;
+				}
+				if (chunk.error != null) {
+					throw chunk.error;
+				}
+
+				try {
+					output.write(chunk.buffer.array(), 0, chunk.length);
+					size += chunk.length;
+				} finally {
+					BufferPool.heap().release(chunk.buffer);
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Read-ahead interrupted");
+		} finally {
+			// Not interrupted, an interrupt close a channel based input of the caller
+			stopped.set(true);
+			drain(queue);
+			await(reader);
+			drain(queue);
+		}
+	}
+
+	private static void read(InputStream input, BlockingQueue<Chunk> queue, int bufferSize, AtomicBoolean stopped) {
+		ByteBuffer buffer = null;
+		try {
+			while (!stopped.get()) {
+				buffer = BufferPool.heap().acquire(bufferSize);
+				int length = fill(input, buffer.array());
+				if (length <= 0) {
+					BufferPool.heap().release(buffer);
+					buffer = null;
+					put(queue, END, stopped);
+					return;
+				}
+
+				if (!put(queue, new Chunk(buffer, length, null), stopped)) {
+					// Released below, the caller no longer takes chunks
+					return;
+				}
+				buffer = null;
+			}
+		} catch (IOException ex) {
+			put(queue, new Chunk(null, 0, ex), stopped);
+		} catch (RuntimeException ex) {
+			put(queue, new Chunk(null, 0, new IOException(ex)), stopped);
+		} finally {
+			BufferPool.heap().release(buffer);
+		}
+	}
+
+	private static long copy(InputStream input, OutputStream output, int bufferSize) throws IOException {
+		ByteBuffer buffer = BufferPool.heap().acquire(bufferSize);
+		try {
+			byte[] bytes = buffer.array();
+			long size = 0;
+			int read;
+			while ((read = input.read(bytes, 0, bytes.length)) != -1) {
+				output.write(bytes, 0, read);
+				size += read;
+			}
+			return size;
+		} finally {
+			BufferPool.heap().release(buffer);
+		}
+	}
+
+	/**
+	 * Read until the buffer is full or end of stream, so each chunk is written with one call
+	 */
+	private static int fill(InputStream input, byte[] bytes) throws IOException {
+		int length = 0;
+		while (length < bytes.length) {
+			int read = input.read(bytes, length, bytes.length - length);
+			if (read == -1) {
+				break;
+			}
+			length += read;
+			if (input.available() <= 0 && length > 0) {
+				break;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * @return false when stopped before the chunk is queued
+	 */
+	private static boolean put(BlockingQueue<Chunk> queue, Chunk chunk, AtomicBoolean stopped) {
+		try {
+			while (!stopped.get()) {
+				if (queue.offer(chunk, OFFER_WAIT, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	/**
+	 * Wait until the reader stop reading the input, a blocked read is not interrupted
+	 */
+	private static void await(Future<?> reader) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				reader.get();
+				break;
+			} catch (InterruptedException ex) {
+				interrupted = true;
+			} catch (ExecutionException ex) {
+				break;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void drain(BlockingQueue<Chunk> queue) {
+		Chunk chunk;
+		while ((chunk = queue.poll()) != null) {
+			if (chunk.buffer != null) {
+				BufferPool.heap().release(chunk.buffer);
+			}
+		}
+	}
+
+	private static final class Chunk {
+		private final ByteBuffer buffer;
+		private final int length;
+		private final IOException error;
+
+		private Chunk(ByteBuffer buffer, int length, IOException error) {
+			this.buffer = buffer;
+			this.length = length;
+			this.error = error;
+		}
+	}
+}
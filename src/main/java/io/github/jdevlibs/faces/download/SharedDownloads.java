@@ -0,0 +1,312 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import io.github.jdevlibs.faces.FacesUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-flight downloads of generated content shared by many users (monthly summary, price list).
+ * The first request of a key run the generator, concurrent requests of the same key wait for the
+ * same result, and the result is kept in a bounded cache (memory then temp file) until expired.
+ * <pre>
+ * String key = "monthly-summary:" + month;
+ * SharedDownloads.download(key, "summary.xlsx", output -&gt; reportService.write(month, output));
+ * </pre>
+ * The content is shared by every user, the key must include every parameter the content depends on.
+ * Limits can be set by system properties <code>faces.download.shared.maxEntries</code>,
+ * <code>faces.download.shared.maxBytes</code> (memory and temp files), <code>faces.download.shared.memory</code>
+ * (maximum bytes kept in memory per entry) and <code>faces.download.shared.ttl</code> (result lifetime in milliseconds).
+ * @author supot.jdev
+ * @version 1.0
+ */
+@Slf4j
+public final class SharedDownloads {
+	private static final int MAX_ENTRIES 	= Integer.getInteger("faces.download.shared.maxEntries", 64);
+	private static final long MAX_BYTES 	= Long.getLong("faces.download.shared.maxBytes", 512L * 1024 * 1024);
+	private static final int MEMORY_SIZE 	= Integer.getInteger("faces.download.shared.memory", SpillBuffer.DEF_THRESHOLD);
+	private static final long TTL 			= Long.getLong("faces.download.shared.ttl", 10 * 60 * 1000L);
+
+	private static final Map<String, CompletableFuture<Entry>> ENTRIES = new ConcurrentHashMap<>();
+
+	private SharedDownloads() {
+	}
+
+	public static void download(String key, String fileName, ContentWriter generator) throws IOException {
+		download(key, fileName, generator, new DownloadOption());
+	}
+
+	/**
+	 * Download the shared content of the key, generate it when not cached
+	 * @param key The content key
+	 * @param fileName The download file name
+	 * @param generator Write the content to output, called once for concurrent requests
+	 * @param option The download option
+	 * @throws IOException When I/O error or the generator failed
+	 */
+	public static void download(String key, String fileName, ContentWriter generator, DownloadOption option)
+			throws IOException {
+		FacesUtils.downloadFile(get(key, generator), fileName, option);
+	}
+
+	/**
+	 * Get the shared content of the key, generate it when not cached
+	 * @param key The content key
+	 * @param generator Write the content to output, called once for concurrent requests
+	 * @return Reader of the shared content, must be closed
+	 * @throws IOException When I/O error or the generator failed
+	 */
+	public static DownloadResource get(String key, ContentWriter generator) throws IOException {
+		while (true) {
+			CompletableFuture<Entry> future = ENTRIES.get(key);
+			if (future == null) {
+				CompletableFuture<Entry> created = new CompletableFuture<>();
+				future = ENTRIES.putIfAbsent(key, created);
+				if (future == null) {
+					future = created;
+					generate(key, created, generator);
+				}
+			}
+
+			Entry entry = await(future);
+			if (entry.isExpired(System.currentTimeMillis())) {
+				remove(key, future);
+				continue;
+			}
+
+			DownloadResource resource = entry.open();
+			if (resource != null) {
+				return resource;
+			}
+			// Evicted while waiting, generate again
+			ENTRIES.remove(key, future);
+		}
+	}
+
+	public static boolean contains(String key) {
+		CompletableFuture<Entry> future = ENTRIES.get(key);
+		return future != null && future.isDone() && !future.isCompletedExceptionally()
+				&& !future.join().isExpired(System.currentTimeMillis());
+	}
+
+	/**
+	 * Remove the cached content, readers in progress are not affected
+	 * @param key The content key
+	 */
+	public static void invalidate(String key) {
+		CompletableFuture<Entry> future = ENTRIES.get(key);
+		if (future != null) {
+			remove(key, future);
+		}
+	}
+
+	public static void clear() {
+		for (Map.Entry<String, CompletableFuture<Entry>> item : ENTRIES.entrySet()) {
+			remove(item.getKey(), item.getValue());
+		}
+	}
+
+	private static void generate(String key, CompletableFuture<Entry> future, ContentWriter generator)
+			throws IOException {
+		SpillBuffer spill = new SpillBuffer(MEMORY_SIZE);
+		try {
+			try {
+				generator.write(spill);
+			} finally {
+				spill.close();
+			}
+			future.complete(new Entry(spill.toResource(), spill.length()));
+		} catch (IOException | RuntimeException | Error ex) {
+			spill.discard();
+			ENTRIES.remove(key, future);
+			future.completeExceptionally(ex);
+			throw ex;
+		}
+
+		evictOverCapacity(future);
+	}
+
+	private static Entry await(CompletableFuture<Entry> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for shared download");
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException) {
+				throw new IOException(cause.getMessage(), cause);
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private static void remove(String key, CompletableFuture<Entry> future) {
+		if (ENTRIES.remove(key, future) && future.isDone() && !future.isCompletedExceptionally()) {
+			future.join().release();
+		}
+	}
+
+	/**
+	 * Evict expired then least recently used entries, the current entry is kept
+	 * so the waiting requests can still read it.
+	 */
+	private static synchronized void evictOverCapacity(CompletableFuture<Entry> current) {
+		long now = System.currentTimeMillis();
+		long total = 0;
+		List<Map.Entry<String, CompletableFuture<Entry>>> completed = new ArrayList<>();
+		for (Map.Entry<String, CompletableFuture<Entry>> item : ENTRIES.entrySet()) {
+			CompletableFuture<Entry> future = item.getValue();
+			if (!future.isDone() || future.isCompletedExceptionally()) {
+				continue;
+			}
+
+			if (future != current && future.join().isExpired(now)) {
+				remove(item.getKey(), future);
+			} else {
+				total += future.join().size;
+				if (future != current) {
+					completed.add(item);
+				}
+			}
+		}
+
+		completed.sort(Comparator.comparingLong(item -> item.getValue().join().lastAccess));
+		int count = completed.size() + 1;
+		for (Map.Entry<String, CompletableFuture<Entry>> item : completed) {
+			if (total <= MAX_BYTES && count <= MAX_ENTRIES) {
+				break;
+			}
+			total -= item.getValue().join().size;
+			count--;
+			remove(item.getKey(), item.getValue());
+		}
+	}
+
+	/**
+	 * Cached content, the temp file is deleted when evicted and the last reader is closed
+	 */
+	private static final class Entry {
+		private final DownloadResource content;
+		private final long size;
+		private final long createdTime = System.currentTimeMillis();
+		// One reference held by the cache, one per open reader
+		private final AtomicInteger references = new AtomicInteger(1);
+		private volatile long lastAccess = createdTime;
+
+		private Entry(DownloadResource content, long size) {
+			this.content = content;
+			this.size = size;
+		}
+
+		private boolean isExpired(long now) {
+			return now - createdTime > TTL;
+		}
+
+		private DownloadResource open() throws IOException {
+			if (!retain()) {
+				return null;
+			}
+
+			lastAccess = System.currentTimeMillis();
+			if (content instanceof ByteArrayResource) {
+				release();
+				return new ByteArrayResource(((ByteArrayResource) content).getContent());
+			}
+
+			try {
+				return new SharedFileResource(this, ((FileResource) content).getFile());
+			} catch (IOException | RuntimeException ex) {
+				release();
+				throw ex;
+			}
+		}
+
+		private boolean retain() {
+			int count;
+			do {
+				count = references.get();
+				if (count == 0) {
+					return false;
+				}
+			} while (!references.compareAndSet(count, count + 1));
+			return true;
+		}
+
+		private void release() {
+			if (references.decrementAndGet() == 0) {
+				try {
+					content.close();
+				} catch (IOException ex) {
+					log.warn("Cannot delete shared download content", ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reader of the shared temp file, every reader has its own channel
+	 */
+	private static final class SharedFileResource extends FileResource {
+		private final Entry entry;
+		private boolean closed;
+
+		private SharedFileResource(Entry entry, File file) throws IOException {
+			super(file);
+			this.entry = entry;
+		}
+
+		@Override
+		public boolean isPersistent() {
+			// The file can be deleted by eviction once this reader is closed
+			return false;
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			if (closed) {
+				return;
+			}
+
+			closed = true;
+			try {
+				super.close();
+			} finally {
+				entry.release();
+			}
+		}
+	}
+}
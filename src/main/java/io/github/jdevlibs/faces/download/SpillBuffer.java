@@ -0,0 +1,207 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Output buffer kept in memory up to the threshold then spilled to a temp file,
+ * used to know the exact content length of unknown length content before sending the body.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public class SpillBuffer extends OutputStream {
+	public static final int DEF_THRESHOLD 		= 1024 * 1024;
+	private static final int INITIAL_SIZE 		= 8 * 1024;
+	private static final int FILE_BUFFER_SIZE 	= 64 * 1024;
+
+	private final int threshold;
+	private byte[] memory;
+	private int count;
+	private Path file;
+	private OutputStream fileOutput;
+	private long length;
+	private boolean closed;
+
+	public SpillBuffer() {
+		this(DEF_THRESHOLD);
+	}
+
+	/**
+	 * @param threshold Maximum bytes kept in memory
+	 */
+	public SpillBuffer(int threshold) {
+		this.threshold = Math.max(0, threshold);
+		this.memory = new byte[Math.min(INITIAL_SIZE, this.threshold)];
+	}
+
+	/**
+	 * Read the input to the end into a new buffer
+	 * @param input The content, not closed by this method
+	 * @param threshold Maximum bytes kept in memory
+	 * @return In-memory or temp file resource, the temp file is deleted when the resource is closed
+	 * @throws IOException When I/O error
+	 */
+	public static DownloadResource read(InputStream input, int threshold) throws IOException {
+		SpillBuffer spill = new SpillBuffer(threshold);
+		ByteBuffer buffer = BufferPool.heap().acquire(BufferPool.sizeFor(-1));
+		try {
+			byte[] bytes = buffer.array();
+			int read;
+			while ((read = input.read(bytes)) != -1) {
+				spill.write(bytes, 0, read);
+			}
+			return spill.toResource();
+		} catch (IOException | RuntimeException ex) {
+			spill.discard();
+			throw ex;
+		} finally {
+			BufferPool.heap().release(buffer);
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] {(byte) b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int len) throws IOException {
+		if (closed) {
+			throw new IOException("Buffer already closed");
+		}
+
+		if (fileOutput == null && (long) count + len > threshold) {
+			spill();
+		}
+
+		if (fileOutput != null) {
+			fileOutput.write(bytes, offset, len);
+		} else {
+			ensureCapacity(count + len);
+			System.arraycopy(bytes, offset, memory, count, len);
+			count += len;
+		}
+		length += len;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (fileOutput != null) {
+			fileOutput.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		if (fileOutput != null) {
+			fileOutput.close();
+		}
+	}
+
+	public long length() {
+		return length;
+	}
+
+	public boolean isSpilled() {
+		return file != null;
+	}
+
+	/**
+	 * Close the buffer and return the content as download resource
+	 * @return In-memory or temp file resource, the temp file is deleted when the resource is closed
+	 * @throws IOException When I/O error
+	 */
+	public DownloadResource toResource() throws IOException {
+		return toResource(null);
+	}
+
+	/**
+	 * Close the buffer and return the content with the digest computed while it was written
+	 * @param digest The digest updated with every byte written, can be null
+	 * @return The content, must be closed to delete the temp file
+	 * @throws IOException When I/O error
+	 */
+	public DownloadResource toResource(MessageDigest digest) throws IOException {
+		close();
+		if (file != null) {
+			try {
+				return new TempFileResource(file, digest);
+			} catch (IOException ex) {
+				discard();
+				throw ex;
+			}
+		}
+
+		byte[] content = (count == memory.length ? memory : Arrays.copyOf(memory, count));
+		return new ByteArrayResource(content);
+	}
+
+	/**
+	 * Close the buffer and delete the temp file, used when the content is not needed
+	 */
+	public void discard() {
+		try {
+			close();
+		} catch (IOException ex) {
+			// Ignore exception
+		}
+
+		if (file != null) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException ex) {
+				// Ignore exception
+			}
+		}
+		memory = null;
+	}
+
+	private void spill() throws IOException {
+		file = Files.createTempFile("faces-download-", ".tmp");
+		fileOutput = new BufferedOutputStream(Files.newOutputStream(file), FILE_BUFFER_SIZE);
+		fileOutput.write(memory, 0, count);
+		memory = null;
+		count = 0;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= memory.length) {
+			return;
+		}
+
+		int size = Math.max(memory.length, 1);
+		while (size < capacity) {
+			size = (int) Math.min((long) size * 2, threshold);
+		}
+		memory = Arrays.copyOf(memory, size);
+	}
+}
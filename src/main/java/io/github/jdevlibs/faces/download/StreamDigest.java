@@ -0,0 +1,196 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Digest computed in the same pass as the body is written, the result is reported to
+ * {@link DownloadOption#onDigest(Consumer)}, kept in the file digest cache
+ * and sent as Repr-Digest trailer when the client accept trailers.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class StreamDigest {
+	public static final String REPR_DIGEST 	= "Repr-Digest";
+	private static final String TRAILER 	= "Trailer";
+	private static final String TE 			= "TE";
+	private static final String HTTP_2 		= "HTTP/2.0";
+
+	private final String algorithm;
+	private final MessageDigest digest;
+	private final Consumer<String> listener;
+	private File file;
+	private long expected = -1;
+	private long count;
+	private boolean failed;
+	private boolean completed;
+	private volatile String fieldValue;
+
+	private StreamDigest(String algorithm, Consumer<String> listener) {
+		this.algorithm = algorithm;
+		this.digest = Digests.create(algorithm);
+		this.listener = listener;
+	}
+
+	/**
+	 * @param option The download option
+	 * @return New stream digest, or null when digest is not enabled
+	 */
+	public static StreamDigest of(DownloadOption option) {
+		if (option.getDigest() == null) {
+			return null;
+		}
+		return new StreamDigest(option.getDigest(), option.getDigestListener());
+	}
+
+	/**
+	 * Report digest known before the body is written (cached or in-memory content)
+	 * @param option The download option
+	 * @param digest The digest
+	 */
+	public static void notify(DownloadOption option, byte[] digest) {
+		if (option.getDigestListener() != null && digest != null) {
+			option.getDigestListener().accept(Digests.toHex(digest));
+		}
+	}
+
+	/**
+	 * Keep the digest in the file digest cache when completed
+	 * @param file The streamed file
+	 * @return This
+	 */
+	public StreamDigest cacheFor(File file) {
+		this.file = file;
+		return this;
+	}
+
+	/**
+	 * Declare Repr-Digest trailer, must be called before the response is committed.
+	 * Trailers are sent with HTTP/2 or HTTP/1.1 chunked response to clients sending <code>TE: trailers</code>.
+	 * @param request The current request
+	 * @param response The current response
+	 * @param chunked false when the response has a Content-Length, HTTP/1.1 trailer is then not declared
+	 * @return true when the trailer is declared
+	 */
+	public boolean trailer(HttpServletRequest request, HttpServletResponse response, boolean chunked) {
+		boolean http2 = HTTP_2.equals(request.getProtocol());
+		if (response.isCommitted() || (!chunked && !http2) || !isTrailerAccepted(request)) {
+			return false;
+		}
+
+		try {
+			response.setTrailerFields(() -> (fieldValue != null
+					? Collections.singletonMap(REPR_DIGEST, fieldValue) : Collections.emptyMap()));
+		} catch (IllegalStateException ex) {
+			// HTTP/1.0 or trailers not supported by the container
+			return false;
+		}
+		response.setHeader(TRAILER, REPR_DIGEST);
+		return true;
+	}
+
+	/**
+	 * Update the digest with every byte written, the digest is completed by {@link #finish()}
+	 * @param output The target output
+	 * @return Digesting output
+	 */
+	public OutputStream wrap(OutputStream output) {
+		return wrap(output, -1);
+	}
+
+	/**
+	 * Update the digest with every byte written, the digest is completed by {@link #finish()}
+	 * @param output The target output
+	 * @param length The expected content length, -1 when unknown
+	 * @return Digesting output
+	 */
+	public OutputStream wrap(OutputStream output, long length) {
+		this.expected = length;
+		return new DigestingOutputStream(output);
+	}
+
+	/**
+	 * Complete the digest when the whole content is written, must be called before the output is closed
+	 * (the trailer is read when the response is completed) and only when the content is fully read.
+	 * Partial content (write error or fewer bytes than the expected length) is never cached nor reported.
+	 * @return true when the digest is completed
+	 */
+	public boolean finish() {
+		if (completed || failed || (expected >= 0 && count != expected)) {
+			return false;
+		}
+
+		completed = true;
+		byte[] value = digest.digest();
+		fieldValue = Digests.toFieldValue(algorithm, value);
+		if (file != null) {
+			Digests.cache(file, algorithm, value);
+		}
+		if (listener != null) {
+			listener.accept(Digests.toHex(value));
+		}
+		return true;
+	}
+
+	private static boolean isTrailerAccepted(HttpServletRequest request) {
+		if (HTTP_2.equals(request.getProtocol())) {
+			return true;
+		}
+
+		String te = request.getHeader(TE);
+		return te != null && te.toLowerCase(Locale.ROOT).contains("trailers");
+	}
+
+	/**
+	 * Digest the written bytes, partial content (write error) is never reported
+	 */
+	private final class DigestingOutputStream extends FilterOutputStream {
+
+		private DigestingOutputStream(OutputStream output) {
+			super(output);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			try {
+				out.write(bytes, offset, length);
+			} catch (IOException | RuntimeException ex) {
+				failed = true;
+				throw ex;
+			}
+			digest.update(bytes, offset, length);
+			count += length;
+		}
+	}
+}
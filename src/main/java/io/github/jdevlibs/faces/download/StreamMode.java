@@ -0,0 +1,30 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+/**
+ * Body mode of unknown length (InputStream) downloads
+ * @author supot.jdev
+ * @version 1.0
+ */
+public enum StreamMode {
+	/** Stream as it is read, lowest time-to-first-byte but no Content-Length (chunked) */
+	CHUNKED,
+	/** Buffer in memory then spill to temp file, send exact Content-Length and support Range/ETag */
+	BUFFERED
+}
@@ -0,0 +1,68 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * Temp file download content, the file is deleted when closed
+ * @author supot.jdev
+ * @version 1.0
+ */
+class TempFileResource extends FileResource {
+	private final Path path;
+	private final String algorithm;
+	private final byte[] digest;
+
+	TempFileResource(Path path) throws IOException {
+		this(path, null);
+	}
+
+	/**
+	 * @param path The temp file
+	 * @param digest Digest computed while the file was written, can be null
+	 */
+	TempFileResource(Path path, MessageDigest digest) throws IOException {
+		super(path.toFile());
+		this.path = path;
+		this.algorithm = (digest == null ? null : digest.getAlgorithm());
+		this.digest = (digest == null ? null : digest.digest());
+	}
+
+	@Override
+	public byte[] digest(String name) {
+		return (digest != null && algorithm.equalsIgnoreCase(name) ? digest.clone() : null);
+	}
+
+	@Override
+	public boolean isPersistent() {
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+}
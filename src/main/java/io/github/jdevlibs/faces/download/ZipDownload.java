@@ -0,0 +1,260 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.download;
+
+import io.github.jdevlibs.faces.JSFMimeTypes;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streaming ZIP archive builder, entries are read one by one and written straight to the output,
+ * no temp file and memory is bounded regardless of the archive size.
+ * Already compressed types (zip, xlsx, pdf, images, ...) are stored without compression.
+ * <pre>
+ * FacesUtils.downloadZip(ZipDownload.create("attachments.zip")
+ *         .add(file1)
+ *         .add("report.csv", () -&gt; service.openReport()));
+ * </pre>
+ * @author supot.jdev
+ * @version 1.0
+ */
+public class ZipDownload {
+	private static final String DEF_TYPE = "application/octet-stream";
+	private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+	private final String fileName;
+	private final List<Item> items = new ArrayList<>();
+	private boolean attachment = true;
+
+	private ZipDownload(String fileName) {
+		this.fileName = fileName;
+	}
+
+	public static ZipDownload create(String fileName) {
+		return new ZipDownload(fileName);
+	}
+
+	public ZipDownload attachment(boolean attachment) {
+		this.attachment = attachment;
+		return this;
+	}
+
+	public ZipDownload add(File file) {
+		return add(file.getName(), file);
+	}
+
+	public ZipDownload add(String name, File file) {
+		items.add(new Item(name, null, () -> new FileInputStream(file), null, file.lastModified()));
+		return this;
+	}
+
+	public ZipDownload add(String name, byte[] content) {
+		items.add(new Item(name, content, null, null, -1));
+		return this;
+	}
+
+	/**
+	 * Add entry from opened stream, the stream is closed after written or when the archive is failed.
+	 * @param name The entry name
+	 * @param input The entry content
+	 */
+	public ZipDownload add(String name, InputStream input) {
+		items.add(new Item(name, null, () -> input, input, -1));
+		return this;
+	}
+
+	/**
+	 * Add entry from supplier, the stream is opened only when the entry is written.
+	 * @param name The entry name
+	 * @param supplier The entry content supplier
+	 */
+	public ZipDownload add(String name, IOSupplier<InputStream> supplier) {
+		items.add(new Item(name, null, supplier, null, -1));
+		return this;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public boolean isAttachment() {
+		return attachment;
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	/**
+	 * Write ZIP archive to output, the output is not closed.
+	 * Entry names are relative paths, leading slash, drive, <code>.</code> and <code>..</code> segments are removed.
+	 * @param output The target output
+	 * @throws IOException When I/O error
+	 */
+	public void writeTo(OutputStream output) throws IOException {
+		Set<String> names = new HashSet<>();
+		ByteBuffer buffer = BufferPool.heap().acquire(BufferPool.sizeFor(-1));
+		int index = 0;
+		try {
+			ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(output, OUTPUT_BUFFER_SIZE));
+			for (; index < items.size(); index++) {
+				Item item = items.get(index);
+				String name = uniqueName(names, item.name);
+				if (item.content != null) {
+					writeBytes(zip, name, item.content);
+				} else {
+					writeStream(zip, name, item, buffer.array());
+				}
+			}
+			zip.finish();
+			zip.flush();
+		} finally {
+			BufferPool.heap().release(buffer);
+			// Opened streams of the entries not written when failed
+			for (int i = index; i < items.size(); i++) {
+				close(items.get(i).input);
+			}
+		}
+	}
+
+	private static void writeBytes(ZipOutputStream zip, String name, byte[] content) throws IOException {
+		ZipEntry entry = new ZipEntry(name);
+		if (isCompressed(name)) {
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(content.length);
+			entry.setCompressedSize(content.length);
+			entry.setCrc(crc.getValue());
+		} else {
+			zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+		}
+
+		zip.putNextEntry(entry);
+		zip.write(content);
+		zip.closeEntry();
+	}
+
+	private static void writeStream(ZipOutputStream zip, String name, Item item, byte[] bytes) throws IOException {
+		// Size and CRC of STORED entry must be known before the data,
+		// streamed compressed types are deflated with level 0 (stored blocks) instead
+		zip.setLevel(isCompressed(name) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+
+		ZipEntry entry = new ZipEntry(name);
+		if (item.lastModified > 0) {
+			entry.setTime(item.lastModified);
+		}
+		zip.putNextEntry(entry);
+		try (InputStream input = item.supplier.get()) {
+			int read;
+			while ((read = input.read(bytes)) != -1) {
+				zip.write(bytes, 0, read);
+			}
+		}
+		zip.closeEntry();
+	}
+
+	private static boolean isCompressed(String name) {
+		return !DEF_TYPE.equals(JSFMimeTypes.getMimeType(name)) && !JSFMimeTypes.isCompressible(name);
+	}
+
+	private static void close(InputStream input) {
+		if (input == null) {
+			return;
+		}
+
+		try {
+			input.close();
+		} catch (IOException ex) {
+			// Ignore exception
+		}
+	}
+
+	/**
+	 * Relative entry name, extracting the archive must not write outside the target directory (zip-slip)
+	 */
+	private static String normalizeName(String name) {
+		if (name == null) {
+			return "file";
+		}
+
+		StringBuilder value = new StringBuilder(name.length());
+		String[] segments = name.replace('\\', '/').split("/");
+		for (int i = 0; i < segments.length; i++) {
+			String segment = segments[i];
+			if (segment.isEmpty() || ".".equals(segment) || "..".equals(segment)
+					|| (i == 0 && segment.length() == 2 && segment.charAt(1) == ':')) {
+				continue;
+			}
+			if (value.length() > 0) {
+				value.append('/');
+			}
+			value.append(segment);
+		}
+		return (value.length() == 0 ? "file" : value.toString());
+	}
+
+	private static String uniqueName(Set<String> names, String name) {
+		String value = normalizeName(name);
+		if (names.add(value)) {
+			return value;
+		}
+
+		int dot = value.lastIndexOf('.');
+		String base = (dot > 0 ? value.substring(0, dot) : value);
+		String ext = (dot > 0 ? value.substring(dot) : "");
+		for (int i = 1; ; i++) {
+			String candidate = base + " (" + i + ")" + ext;
+			if (names.add(candidate)) {
+				return candidate;
+			}
+		}
+	}
+
+	private static final class Item {
+		private final String name;
+		private final byte[] content;
+		private final IOSupplier<InputStream> supplier;
+		// Stream opened by the caller, null when opened by the supplier
+		private final InputStream input;
+		private final long lastModified;
+
+		private Item(String name, byte[] content, IOSupplier<InputStream> supplier, InputStream input,
+				long lastModified) {
+			this.name = name;
+			this.content = content;
+			this.supplier = supplier;
+			this.input = input;
+			this.lastModified = lastModified;
+		}
+	}
+}
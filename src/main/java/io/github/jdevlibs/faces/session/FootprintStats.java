@@ -0,0 +1,89 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.session;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the session attribute footprint of one key pattern
+ * @author supot.jdev
+ * @version 1.0
+ */
+public class FootprintStats implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final String pattern;
+	private final long samples;
+	private final long totalBytes;
+	private final long maxBytes;
+	private final long lastBytes;
+	private final long notSerializable;
+
+	FootprintStats(String pattern, long samples, long totalBytes, long maxBytes, long lastBytes,
+			long notSerializable) {
+		this.pattern = pattern;
+		this.samples = samples;
+		this.totalBytes = totalBytes;
+		this.maxBytes = maxBytes;
+		this.lastBytes = lastBytes;
+		this.notSerializable = notSerializable;
+	}
+
+	/**
+	 * @return Attribute key pattern, digits are replaced by # and ids by *, Ex. PFD_KEY_#
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @return Number of sized values (serializable)
+	 */
+	public long getSamples() {
+		return samples;
+	}
+
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public long getAverageBytes() {
+		return (samples == 0 ? 0 : totalBytes / samples);
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getLastBytes() {
+		return lastBytes;
+	}
+
+	/**
+	 * @return Number of values that cannot be serialized (break session replication and passivation)
+	 */
+	public long getNotSerializable() {
+		return notSerializable;
+	}
+
+	@Override
+	public String toString() {
+		return "FootprintStats [pattern=" + pattern + ", samples=" + samples + ", averageBytes=" + getAverageBytes()
+				+ ", maxBytes=" + maxBytes + ", notSerializable=" + notSerializable + "]";
+	}
+}
@@ -0,0 +1,294 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.session;
+
+import jakarta.servlet.http.HttpSessionBindingEvent;
+import jakarta.servlet.http.HttpSessionBindingListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Large read-only dataset kept in a temp file outside the Java heap, the session holds only this small handle
+ * (file path and block index). Rows are read by page, so the heap holds only the page being rendered
+ * and the file content stays in the OS page cache.
+ * <pre>
+ * FacesUtils.addSessionDataset("searchResult", rows);
+ * SessionDataset&lt;Row&gt; dataset = FacesUtils.getSessionDataset("searchResult");
+ * List&lt;Row&gt; page = dataset.getPage(first, pageSize);
+ * </pre>
+ * The file is deleted when the handle is removed or replaced in the session and when the session is invalidated
+ * or expired ({@link HttpSessionBindingListener}), so the same handle must not be stored under two keys.
+ * The handle is serializable for session passivation, but the file is local to the node.
+ * @param <T> Row type, must be serializable
+ * @author supot.jdev
+ * @version 1.0
+ */
+@Slf4j
+public final class SessionDataset<T> implements HttpSessionBindingListener, Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final int BLOCK_ROWS 	= 256;
+	private static final int BUFFER_SIZE 	= 64 * 1024;
+	private static Path directory;
+
+	private final String path;
+	private final int size;
+	// Start position of each block of BLOCK_ROWS rows, the last item is the file size
+	private final long[] offsets;
+	private volatile boolean closed;
+
+	private SessionDataset(Path file, int size, long[] offsets) {
+		this.path = file.toString();
+		this.size = size;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Write the rows to a new dataset file
+	 * @param rows The rows, each row must be serializable
+	 * @param <T> Row type
+	 * @return The dataset handle
+	 * @throws IOException When I/O error or a row is not serializable
+	 */
+	public static <T> SessionDataset<T> create(Iterable<? extends T> rows) throws IOException {
+		Path file = Files.createTempFile(getDirectory(), "data-", ".tmp");
+		try (FileChannel output = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			long[] offsets = new long[16];
+			int blocks = 0;
+			int count = 0;
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+			ObjectOutputStream block = null;
+			for (T row : rows) {
+				if (block == null) {
+					block = new ObjectOutputStream(buffer);
+				}
+				block.writeObject(row);
+				count++;
+				if (count % BLOCK_ROWS == 0) {
+					offsets = addOffset(offsets, blocks++, output.position());
+					writeBlock(block, buffer, output);
+					block = null;
+				}
+			}
+			if (block != null) {
+				offsets = addOffset(offsets, blocks++, output.position());
+				writeBlock(block, buffer, output);
+			}
+
+			offsets = addOffset(offsets, blocks, output.position());
+			return new SessionDataset<>(file, count, Arrays.copyOf(offsets, blocks + 1));
+		} catch (IOException | RuntimeException ex) {
+			Files.deleteIfExists(file);
+			throw ex;
+		}
+	}
+
+	/**
+	 * @return Number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return false when the dataset is closed or the file is not found (session restored on another node)
+	 */
+	public boolean isAvailable() {
+		return !closed && Files.exists(Paths.get(path));
+	}
+
+	/**
+	 * @param index The row index
+	 * @return The row
+	 * @throws IOException When I/O error
+	 * @throws IndexOutOfBoundsException When the index is out of range
+	 */
+	public T get(int index) throws IOException {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return getPage(index, 1).get(0);
+	}
+
+	/**
+	 * Read the rows of the page, only the blocks of the page are read
+	 * @param first The first row index
+	 * @param pageSize Maximum number of rows
+	 * @return The rows, empty when the first row is out of range
+	 * @throws IOException When I/O error
+	 */
+	public List<T> getPage(int first, int pageSize) throws IOException {
+		if (first < 0 || first >= size || pageSize <= 0) {
+			return Collections.emptyList();
+		}
+
+		int last = (int) Math.min(size, (long) first + pageSize) - 1;
+		int fromBlock = first / BLOCK_ROWS;
+		int toBlock = last / BLOCK_ROWS;
+		byte[] bytes = read(offsets[fromBlock], offsets[toBlock + 1]);
+
+		List<T> rows = new ArrayList<>(last - first + 1);
+		for (int block = fromBlock; block <= toBlock; block++) {
+			int start = (int) (offsets[block] - offsets[fromBlock]);
+			int length = (int) (offsets[block + 1] - offsets[block]);
+			int blockFirst = block * BLOCK_ROWS;
+			int blockLast = Math.min(size, blockFirst + BLOCK_ROWS) - 1;
+			try (ObjectInputStream input = new RowInputStream(new ByteArrayInputStream(bytes, start, length))) {
+				for (int index = blockFirst; index <= Math.min(blockLast, last); index++) {
+					T row = readRow(input);
+					if (index >= first) {
+						rows.add(row);
+					}
+				}
+			}
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Read all rows block by block, Ex. for export or building a sorted dataset
+	 * @param action The row action
+	 * @throws IOException When I/O error
+	 */
+	public void forEach(Consumer<? super T> action) throws IOException {
+		for (int first = 0; first < size; first += BLOCK_ROWS) {
+			getPage(first, BLOCK_ROWS).forEach(action);
+		}
+	}
+
+	/**
+	 * Close and delete the dataset file
+	 */
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		try {
+			Files.deleteIfExists(Paths.get(path));
+		} catch (IOException ex) {
+			log.warn("Cannot delete session dataset file {}", path);
+		}
+	}
+
+	@Override
+	public void valueUnbound(HttpSessionBindingEvent event) {
+		close();
+	}
+
+	private byte[] read(long from, long to) throws IOException {
+		long length = to - from;
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new IOException("Page too large : " + length + " bytes");
+		}
+
+		if (closed) {
+			throw new IOException("Session dataset is closed");
+		}
+
+		// Opened per page, no file handle is held for the session lifetime
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[(int) length]);
+		try (FileChannel input = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			while (buffer.hasRemaining()) {
+				if (input.read(buffer, from + buffer.position()) == -1) {
+					throw new IOException("Session dataset file is truncated : " + path);
+				}
+			}
+		}
+		return buffer.array();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T readRow(ObjectInputStream input) throws IOException {
+		try {
+			return (T) input.readObject();
+		} catch (ClassNotFoundException ex) {
+			throw new IOException("Cannot read session dataset row", ex);
+		}
+	}
+
+	private static void writeBlock(ObjectOutputStream block, ByteArrayOutputStream buffer, FileChannel output)
+			throws IOException {
+		block.close();
+		ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+		while (bytes.hasRemaining()) {
+			output.write(bytes);
+		}
+		buffer.reset();
+	}
+
+	private static long[] addOffset(long[] offsets, int index, long offset) {
+		long[] values = (index < offsets.length ? offsets : Arrays.copyOf(offsets, offsets.length * 2));
+		values[index] = offset;
+		return values;
+	}
+
+	private static synchronized Path getDirectory() throws IOException {
+		if (directory == null || !Files.isDirectory(directory)) {
+			directory = Files.createTempDirectory("faces-session-data");
+		}
+		return directory;
+	}
+
+	/**
+	 * Resolve the row classes by the web application class loader
+	 */
+	private static final class RowInputStream extends ObjectInputStream {
+
+		private RowInputStream(InputStream input) throws IOException {
+			super(input);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			ClassLoader loader = Thread.currentThread().getContextClassLoader();
+			if (loader != null) {
+				try {
+					return Class.forName(desc.getName(), false, loader);
+				} catch (ClassNotFoundException ex) {
+					// Try the default resolution
+				}
+			}
+			return super.resolveClass(desc);
+		}
+	}
+}
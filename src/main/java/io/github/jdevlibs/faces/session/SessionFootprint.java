@@ -0,0 +1,428 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.session;
+
+import jakarta.servlet.http.HttpSession;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Session footprint profiler and per-session byte budget for attributes added by
+ * {@link io.github.jdevlibs.faces.FacesUtils#addSession(String, Object)}.
+ * <ul>
+ * <li>Profiler: a sample of the added values is sized (Java serialized bytes, what replication and
+ * passivation transfer) on a background thread and aggregated by key pattern, see {@link #getTopOffenders(int)}.
+ * A sample is dropped when the sampler is busy or the value is changed by another request while sized.</li>
+ * <li>Budget: every added value is sized on the request thread (stopped at the budget) and the
+ * {@link Policy} is applied when the session total exceeds the budget.</li>
+ * </ul>
+ * Configured by system properties <code>faces.session.sample</code> (0.0 - 1.0, default 0 disabled),
+ * <code>faces.session.budget</code> (bytes, default -1 disabled) and <code>faces.session.policy</code> (WARN, REJECT, EVICT)
+ * or by {@link #setSampleRate(double)} and {@link #setBudget(long, Policy)}. Invalid property values are logged
+ * and the defaults are used.
+ * @author supot.jdev
+ * @version 1.0
+ */
+@Slf4j
+public final class SessionFootprint {
+	private static final String SIZES_KEY 	= SessionSizes.class.getName();
+	private static final int MAX_PATTERNS 	= 1000;
+	private static final int MAX_QUEUED 	= 256;
+	// Value changed while serialized, not recorded
+	private static final long DROPPED 		= -2;
+	private static final Pattern ID_TOKEN 	= Pattern.compile(
+			"[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}|[0-9a-fA-F]{16,}");
+	private static final Pattern DIGITS 	= Pattern.compile("[0-9]+");
+
+	private static final Map<String, KeyStats> STATS = new ConcurrentHashMap<>();
+	private static final ExecutorService SAMPLER = createSampler();
+
+	private static volatile double sampleRate = parseSampleRate(System.getProperty("faces.session.sample"));
+	private static volatile long budget = parseBudget(System.getProperty("faces.session.budget"));
+	private static volatile Policy policy = parsePolicy(System.getProperty("faces.session.policy"));
+
+	/**
+	 * Action when the session budget is exceeded
+	 */
+	public enum Policy {
+		/** Log warning and keep the value */
+		WARN,
+		/** Log warning and throw IllegalStateException, the value is not added */
+		REJECT,
+		/** Remove the oldest attributes added by addSession until the value fit */
+		EVICT
+	}
+
+	private SessionFootprint() {
+	}
+
+	public static boolean isEnabled() {
+		return sampleRate > 0 || budget > 0;
+	}
+
+	/**
+	 * @param rate Fraction of added values sized by the profiler, 0.0 - 1.0 (0 disable)
+	 */
+	public static void setSampleRate(double rate) {
+		sampleRate = Math.max(0, Math.min(1, rate));
+	}
+
+	public static double getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @param bytes Maximum estimated bytes of the attributes added per session, -1 disable
+	 * @param action Action when exceeded
+	 */
+	public static void setBudget(long bytes, Policy action) {
+		budget = bytes;
+		policy = (action == null ? Policy.WARN : action);
+	}
+
+	public static long getBudget() {
+		return budget;
+	}
+
+	public static Policy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Called before the value is put in the session
+	 * @param session The current session
+	 * @param key The attribute key
+	 * @param value The attribute value
+	 * @throws IllegalStateException When the budget is exceeded with REJECT policy
+	 */
+	public static void onAdd(HttpSession session, String key, Object value) {
+		if (budget > 0) {
+			enforce(session, key, value);
+		} else if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+			// Off the request path, the sample is dropped when the sampler is busy
+			SAMPLER.execute(() -> record(key, estimateSize(value, Long.MAX_VALUE)));
+		}
+	}
+
+	/**
+	 * Called when the attribute is removed from the session
+	 * @param session The current session, null when the request has no session
+	 * @param key The attribute key
+	 */
+	public static void onRemove(HttpSession session, String key) {
+		SessionSizes sizes = (session == null ? null : (SessionSizes) session.getAttribute(SIZES_KEY));
+		if (sizes != null && sizes.remove(key)) {
+			session.setAttribute(SIZES_KEY, sizes);
+		}
+	}
+
+	/**
+	 * Key patterns with the largest average size
+	 * @param limit Maximum number of patterns
+	 * @return Largest first
+	 */
+	public static List<FootprintStats> getTopOffenders(int limit) {
+		List<FootprintStats> stats = new ArrayList<>(STATS.size());
+		for (Map.Entry<String, KeyStats> item : STATS.entrySet()) {
+			stats.add(item.getValue().snapshot(item.getKey()));
+		}
+
+		stats.sort(Comparator.comparingLong(FootprintStats::getAverageBytes)
+				.thenComparingLong(FootprintStats::getNotSerializable).reversed());
+		return (stats.size() > limit ? new ArrayList<>(stats.subList(0, limit)) : stats);
+	}
+
+	/**
+	 * @param session The session
+	 * @return Estimated bytes of the attributes added by addSession, tracked when the budget is enabled
+	 */
+	public static long getSessionBytes(HttpSession session) {
+		SessionSizes sizes = (SessionSizes) session.getAttribute(SIZES_KEY);
+		return (sizes == null ? 0 : sizes.total(null, key -> session.getAttribute(key) != null));
+	}
+
+	public static void reset() {
+		STATS.clear();
+	}
+
+	/**
+	 * Stop the sampler thread, called when the web application is stopped
+	 */
+	public static void shutdown() {
+		SAMPLER.shutdownNow();
+	}
+
+	/**
+	 * Java serialized size of the value
+	 * @param value The value
+	 * @return Size in bytes, or -1 when the value cannot be serialized
+	 */
+	public static long estimateSize(Object value) {
+		long size = estimateSize(value, Long.MAX_VALUE);
+		return (size < 0 ? -1 : size);
+	}
+
+	/**
+	 * Attribute key without the variable part, Ex. order_1234 and order_5678 are order_#
+	 * @param key The attribute key
+	 * @return The key pattern
+	 */
+	public static String keyPattern(String key) {
+		if (key == null) {
+			return "null";
+		}
+		String pattern = ID_TOKEN.matcher(key).replaceAll("*");
+		return DIGITS.matcher(pattern).replaceAll("#");
+	}
+
+	private static void enforce(HttpSession session, String key, Object value) {
+		long limit = budget;
+		long size = estimateSize(value, limit);
+		record(key, size);
+		if (size < 0) {
+			// Not serializable, cannot be replicated anyway
+			size = 0;
+		}
+
+		SessionSizes sizes = getSizes(session);
+		long others = sizes.total(key, name -> session.getAttribute(name) != null);
+		if (others + size <= limit) {
+			putSize(session, sizes, key, size);
+			return;
+		}
+
+		switch (policy) {
+			case REJECT:
+				log.warn("Session budget {} bytes exceeded, rejected attribute [{}] ({} + {} bytes)",
+						limit, key, others, size);
+				throw new IllegalStateException("Session budget exceeded, attribute rejected : " + key);
+			case EVICT:
+				for (String name : sizes.keys()) {
+					if (others + size <= limit) {
+						break;
+					}
+					if (!name.equals(key)) {
+						others -= sizes.size(name);
+						sizes.remove(name);
+						session.removeAttribute(name);
+						log.info("Session budget {} bytes exceeded, evicted attribute [{}]", limit, name);
+					}
+				}
+				if (others + size > limit) {
+					log.warn("Session attribute [{}] alone exceeds the budget {} bytes", key, limit);
+				}
+				break;
+			default:
+				log.warn("Session budget {} bytes exceeded by attribute [{}] ({} + {} bytes)", limit, key, others, size);
+				break;
+		}
+		putSize(session, sizes, key, size);
+	}
+
+	private static void putSize(HttpSession session, SessionSizes sizes, String key, long size) {
+		sizes.put(key, size);
+		// Set again after every change, a replicated session copy only changed attributes
+		session.setAttribute(SIZES_KEY, sizes);
+	}
+
+	private static SessionSizes getSizes(HttpSession session) {
+		SessionSizes sizes = (SessionSizes) session.getAttribute(SIZES_KEY);
+		if (sizes == null) {
+			sizes = new SessionSizes();
+			session.setAttribute(SIZES_KEY, sizes);
+		}
+		return sizes;
+	}
+
+	private static void record(String key, long size) {
+		if (size == DROPPED) {
+			return;
+		}
+
+		String pattern = keyPattern(key);
+		KeyStats stats = STATS.get(pattern);
+		if (stats == null) {
+			if (STATS.size() >= MAX_PATTERNS) {
+				return;
+			}
+			stats = STATS.computeIfAbsent(pattern, k -> new KeyStats());
+		}
+		stats.record(size);
+	}
+
+	/**
+	 * Serialized size, the serialization stop when the limit is exceeded
+	 * @return Size in bytes (limit + 1 when exceeded), -1 when not serializable
+	 * or -2 when the value is changed while serialized
+	 */
+	static long estimateSize(Object value, long limit) {
+		if (value == null) {
+			return 0;
+		}
+
+		CountingOutputStream counter = new CountingOutputStream(limit);
+		try (ObjectOutputStream output = new ObjectOutputStream(counter)) {
+			output.writeObject(value);
+			output.flush();
+			return counter.count;
+		} catch (LimitExceededException ex) {
+			return limit + 1;
+		} catch (NotSerializableException ex) {
+			return -1;
+		} catch (IOException | RuntimeException ex) {
+			// Value changed while serialized (ConcurrentModificationException, ...)
+			log.debug("Cannot estimate session value size", ex);
+			return DROPPED;
+		}
+	}
+
+	private static ExecutorService createSampler() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(MAX_QUEUED), r -> {
+					Thread thread = new Thread(r, "faces-session-footprint");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}, new ThreadPoolExecutor.DiscardPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static double parseSampleRate(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return 0;
+		}
+
+		try {
+			return Math.max(0, Math.min(1, Double.parseDouble(value.trim())));
+		} catch (NumberFormatException ex) {
+			log.warn("Invalid faces.session.sample [{}], profiler disabled", value);
+			return 0;
+		}
+	}
+
+	private static long parseBudget(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return -1;
+		}
+
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException ex) {
+			log.warn("Invalid faces.session.budget [{}], budget disabled", value);
+			return -1;
+		}
+	}
+
+	private static Policy parsePolicy(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return Policy.WARN;
+		}
+
+		try {
+			return Policy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException ex) {
+			log.warn("Invalid faces.session.policy [{}], WARN is used", value);
+			return Policy.WARN;
+		}
+	}
+
+	private static final class KeyStats {
+		private final AtomicLong samples = new AtomicLong();
+		private final AtomicLong totalBytes = new AtomicLong();
+		private final AtomicLong maxBytes = new AtomicLong();
+		private final AtomicLong notSerializable = new AtomicLong();
+		private volatile long lastBytes;
+
+		private void record(long size) {
+			if (size < 0) {
+				notSerializable.incrementAndGet();
+				return;
+			}
+
+			samples.incrementAndGet();
+			totalBytes.addAndGet(size);
+			maxBytes.accumulateAndGet(size, Math::max);
+			lastBytes = size;
+		}
+
+		private FootprintStats snapshot(String pattern) {
+			return new FootprintStats(pattern, samples.get(), totalBytes.get(), maxBytes.get(), lastBytes,
+					notSerializable.get());
+		}
+	}
+
+	/**
+	 * Count bytes without keeping them
+	 */
+	private static final class CountingOutputStream extends OutputStream {
+		private final long limit;
+		private long count;
+
+		private CountingOutputStream(long limit) {
+			this.limit = limit;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			add(1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			add(length);
+		}
+
+		private void add(long length) throws IOException {
+			count += length;
+			if (count > limit) {
+				throw new LimitExceededException();
+			}
+		}
+	}
+
+	private static final class LimitExceededException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		private LimitExceededException() {
+			super("Size limit exceeded", null);
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+}
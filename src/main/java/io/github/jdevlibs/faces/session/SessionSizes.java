@@ -0,0 +1,80 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.session;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Estimated bytes of the attributes added by {@link SessionFootprint#onAdd}, in added order.
+ * Kept in the session, so it is small and replicated with the session. Changed in place, the attribute
+ * must be set again after every change to be replicated.
+ * @author supot.jdev
+ * @version 1.0
+ */
+class SessionSizes implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>();
+
+	synchronized void put(String key, long size) {
+		sizes.remove(key);
+		sizes.put(key, size);
+	}
+
+	/**
+	 * @param key The attribute key
+	 * @return true when the key was tracked
+	 */
+	synchronized boolean remove(String key) {
+		return sizes.remove(key) != null;
+	}
+
+	/**
+	 * Total bytes of the tracked attributes except the key, removed attributes are dropped
+	 * @param key The key excluded from the total
+	 * @param present Check the attribute still exist in the session
+	 * @return Total bytes
+	 */
+	synchronized long total(String key, Predicate<String> present) {
+		long total = 0;
+		sizes.entrySet().removeIf(item -> !item.getKey().equals(key) && !present.test(item.getKey()));
+		for (Map.Entry<String, Long> item : sizes.entrySet()) {
+			if (!item.getKey().equals(key)) {
+				total += item.getValue();
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @return Tracked keys, oldest first
+	 */
+	synchronized List<String> keys() {
+		return new ArrayList<>(sizes.keySet());
+	}
+
+	synchronized long size(String key) {
+		Long size = sizes.get(key);
+		return (size == null ? 0 : size);
+	}
+}
@@ -0,0 +1,291 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.upload;
+
+import io.github.jdevlibs.faces.download.Digests;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chunked and resumable upload assembly (p:fileUpload maxChunkSize, or any client sending Content-Range chunks).
+ * Chunks are written in order to a part file in the target directory, a broken upload is resumed from
+ * {@link #getOffset(String, File)}. The digest is computed while the chunks are written.
+ * <pre>
+ * UploadResult result = ChunkedUploads.append(uploadId, fileName, input,
+ *         request.getHeader("Content-Range"), uploadDir, option);
+ * if (result != null) {
+ *     // Completed
+ * }
+ * </pre>
+ * Abandoned part files are deleted after <code>faces.upload.chunks.ttl</code> milliseconds (default 24 hours),
+ * including part files left in the upload directories by a previous run. An upload exceeding the size limit
+ * is deleted and fails with {@link UploadSizeException}.
+ * @author supot.jdev
+ * @version 1.0
+ */
+@Slf4j
+public final class ChunkedUploads {
+	private static final long TTL 				= Long.getLong("faces.upload.chunks.ttl", 24 * 60 * 60 * 1000L);
+	private static final long PURGE_INTERVAL 	= 60 * 1000L;
+	private static final Pattern UPLOAD_ID 		= Pattern.compile("[A-Za-z0-9_-]{1,64}");
+	private static final Pattern CONTENT_RANGE 	= Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+	private static final Map<String, Assembly> ASSEMBLIES = new ConcurrentHashMap<>();
+	private static final Set<Path> DIRECTORIES = ConcurrentHashMap.newKeySet();
+	private static volatile long lastPurge = System.currentTimeMillis();
+
+	private ChunkedUploads() {
+	}
+
+	/**
+	 * Bytes already received, the client resume the upload from this offset
+	 * @param uploadId The upload id
+	 * @param directory The target directory
+	 * @return Received bytes, 0 when not started
+	 * @throws IOException When the id is invalid
+	 */
+	public static long getOffset(String uploadId, File directory) throws IOException {
+		Assembly assembly = ASSEMBLIES.get(key(uploadId, directory));
+		if (assembly != null) {
+			synchronized (assembly) {
+				return assembly.size;
+			}
+		}
+
+		Path part = partFile(uploadId, directory);
+		return (Files.exists(part) ? Files.size(part) : 0);
+	}
+
+	/**
+	 * Append chunk by Content-Range header value
+	 * @param uploadId The upload id, [A-Za-z0-9_-] up to 64 characters
+	 * @param fileName The client file name
+	 * @param chunk The chunk content, not closed by this method
+	 * @param contentRange Content-Range header, Ex. bytes 0-1048575/5000000
+	 * @param directory The target directory
+	 * @param option The upload option
+	 * @return The stored upload when the last chunk is written, otherwise null
+	 * @throws IOException When I/O error, unexpected offset, size limit exceeded or type not allowed
+	 */
+	public static UploadResult append(String uploadId, String fileName, InputStream chunk, String contentRange,
+			File directory, UploadOption option) throws IOException {
+		Matcher matcher = (contentRange == null ? null : CONTENT_RANGE.matcher(contentRange.trim()));
+		if (matcher == null || !matcher.matches()) {
+			throw new IOException("Invalid Content-Range : " + contentRange);
+		}
+
+		long offset = Long.parseLong(matcher.group(1));
+		long total = ("*".equals(matcher.group(3)) ? -1 : Long.parseLong(matcher.group(3)));
+		return append(uploadId, fileName, chunk, offset, total, directory, option);
+	}
+
+	/**
+	 * Append chunk at the offset, chunks must be sent in order
+	 * @param uploadId The upload id, [A-Za-z0-9_-] up to 64 characters
+	 * @param fileName The client file name
+	 * @param chunk The chunk content, not closed by this method
+	 * @param offset The chunk position, must be equals {@link #getOffset(String, File)}
+	 * @param total The upload size, -1 when unknown (until the last chunk)
+	 * @param directory The target directory
+	 * @param option The upload option
+	 * @return The stored upload when the last chunk is written, otherwise null
+	 * @throws UploadSizeException When the size limit exceeded, the received chunks are deleted
+	 * @throws IOException When I/O error, unexpected offset or type not allowed
+	 */
+	public static UploadResult append(String uploadId, String fileName, InputStream chunk, long offset, long total,
+			File directory, UploadOption option) throws IOException {
+		purge(directory);
+		String name = FileUploads.cleanFileName(fileName);
+		String contentType = FileUploads.checkType(name, option);
+		FileUploads.checkSize(total, option);
+
+		String key = key(uploadId, directory);
+		Path part = partFile(uploadId, directory);
+		FileUploads.createDirectory(directory);
+		Assembly assembly = ASSEMBLIES.computeIfAbsent(key, k -> new Assembly(part, option.getDigest()));
+
+		synchronized (assembly) {
+			if (assembly.completed) {
+				throw new IOException("Upload already completed : " + uploadId);
+			}
+			if (offset != assembly.size) {
+				throw new IOException("Unexpected chunk offset " + offset + ", expected " + assembly.size);
+			}
+
+			assembly.lastAccess = System.currentTimeMillis();
+			try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				try {
+					assembly.size += FileUploads.write(chunk, channel, offset, assembly.digest, option.getMaxSize());
+				} catch (UploadSizeException ex) {
+					remove(key, assembly);
+					throw ex;
+				} catch (IOException | RuntimeException ex) {
+					// Bytes written before the error are kept for resume, the digest is computed again when completed
+					assembly.size = channel.size();
+					assembly.digest = null;
+					throw ex;
+				}
+
+				if (total < 0 || assembly.size < total) {
+					return null;
+				}
+				if (assembly.size > total) {
+					remove(key, assembly);
+					throw new IOException("Upload size " + assembly.size + " exceeds the declared size " + total);
+				}
+				channel.truncate(total);
+			}
+
+			assembly.completed = true;
+			try {
+				String digest = digest(assembly, option);
+				File file = FileUploads.store(part, directory, name, option.isOverwrite());
+				return new UploadResult(file, name, contentType, assembly.size, digest);
+			} finally {
+				remove(key, assembly);
+			}
+		}
+	}
+
+	/**
+	 * Cancel the upload and delete the received chunks
+	 * @param uploadId The upload id
+	 * @param directory The target directory
+	 * @throws IOException When the id is invalid or I/O error
+	 */
+	public static void cancel(String uploadId, File directory) throws IOException {
+		String key = key(uploadId, directory);
+		Assembly assembly = ASSEMBLIES.remove(key);
+		if (assembly != null) {
+			synchronized (assembly) {
+				assembly.completed = true;
+			}
+		}
+		Files.deleteIfExists(partFile(uploadId, directory));
+	}
+
+	private static String digest(Assembly assembly, UploadOption option) throws IOException {
+		if (option.getDigest() == null) {
+			return null;
+		}
+
+		MessageDigest digest = assembly.digest;
+		if (digest != null && digest.getAlgorithm().equalsIgnoreCase(option.getDigest())) {
+			return Digests.toHex(digest.digest());
+		}
+		// Resumed after restart or failed chunk, read the assembled file once
+		return Digests.toHex(Digests.compute(assembly.part.toFile(), option.getDigest()));
+	}
+
+	private static void remove(String key, Assembly assembly) {
+		ASSEMBLIES.remove(key, assembly);
+		assembly.completed = true;
+		try {
+			Files.deleteIfExists(assembly.part);
+		} catch (IOException ex) {
+			log.warn("Cannot delete upload part {}", assembly.part);
+		}
+	}
+
+	private static void purge(File directory) {
+		DIRECTORIES.add(directory.getAbsoluteFile().toPath());
+		long now = System.currentTimeMillis();
+		if (now - lastPurge < PURGE_INTERVAL) {
+			return;
+		}
+
+		lastPurge = now;
+		Iterator<Map.Entry<String, Assembly>> iterator = ASSEMBLIES.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, Assembly> item = iterator.next();
+			Assembly assembly = item.getValue();
+			if (now - assembly.lastAccess > TTL) {
+				synchronized (assembly) {
+					remove(item.getKey(), assembly);
+				}
+			}
+		}
+
+		for (Path dir : DIRECTORIES) {
+			purgeParts(dir, now);
+		}
+	}
+
+	/**
+	 * Delete part files without assembly (left by a restart) older than the TTL
+	 */
+	private static void purgeParts(Path directory, long now) {
+		try (DirectoryStream<Path> parts = Files.newDirectoryStream(directory, ".upload-*.part")) {
+			for (Path part : parts) {
+				if (!ASSEMBLIES.containsKey(part.toString())
+						&& now - Files.getLastModifiedTime(part).toMillis() > TTL) {
+					Files.deleteIfExists(part);
+				}
+			}
+		} catch (NoSuchFileException ex) {
+			DIRECTORIES.remove(directory);
+		} catch (IOException ex) {
+			log.warn("Cannot purge upload parts in {}", directory);
+		}
+	}
+
+	private static String key(String uploadId, File directory) throws IOException {
+		return partFile(uploadId, directory).toString();
+	}
+
+	private static Path partFile(String uploadId, File directory) throws IOException {
+		if (uploadId == null || !UPLOAD_ID.matcher(uploadId).matches()) {
+			throw new IOException("Invalid upload id : " + uploadId);
+		}
+		return directory.getAbsoluteFile().toPath().resolve(".upload-" + uploadId + ".part");
+	}
+
+	/**
+	 * Upload in progress, the part file may exist from a previous run (resume without digest state)
+	 */
+	private static final class Assembly {
+		private final Path part;
+		private MessageDigest digest;
+		private long size;
+		private boolean completed;
+		private volatile long lastAccess = System.currentTimeMillis();
+
+		private Assembly(Path part, String algorithm) {
+			this.part = part;
+			long existing = part.toFile().length();
+			this.size = existing;
+			this.digest = (algorithm != null && existing == 0 ? Digests.create(algorithm) : null);
+		}
+	}
+}
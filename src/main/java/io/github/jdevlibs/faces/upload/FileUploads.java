@@ -0,0 +1,227 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.upload;
+
+import io.github.jdevlibs.faces.JSFMimeTypes;
+import io.github.jdevlibs.faces.download.BufferPool;
+import io.github.jdevlibs.faces.download.Digests;
+import jakarta.servlet.http.Part;
+import org.primefaces.model.file.UploadedFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Store uploads (p:fileUpload, Servlet Part) straight to a directory through a {@link FileChannel},
+ * the size limit and digest are checked while the content is written so the upload never sit in the heap.
+ * <pre>
+ * public void handleUpload(FileUploadEvent event) throws IOException {
+ *     UploadResult result = FileUploads.save(event.getFile(), uploadDir,
+ *             new UploadOption().maxSize(100 * 1024 * 1024).digest(Digests.SHA_256));
+ * }
+ * </pre>
+ * The upload is written to a temp file in the target directory and moved to its name when completed,
+ * a partial upload is never visible under the target name.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class FileUploads {
+	private static final String TEMP_PREFIX = ".upload-";
+	private static final String TEMP_SUFFIX = ".part";
+
+	private FileUploads() {
+	}
+
+	/**
+	 * Store PrimeFaces uploaded file
+	 * @param upload The uploaded file
+	 * @param directory The target directory
+	 * @param option The upload option
+	 * @return The stored upload
+	 * @throws IOException When I/O error, size limit exceeded or type not allowed
+	 */
+	public static UploadResult save(UploadedFile upload, File directory, UploadOption option) throws IOException {
+		checkSize(upload.getSize(), option);
+		try (InputStream input = upload.getInputStream()) {
+			return save(input, upload.getFileName(), directory, option);
+		} finally {
+			// Release the container temp file
+			upload.delete();
+		}
+	}
+
+	/**
+	 * Store multipart request part
+	 * @param part The file part
+	 * @param directory The target directory
+	 * @param option The upload option
+	 * @return The stored upload
+	 * @throws IOException When I/O error, size limit exceeded or type not allowed
+	 */
+	public static UploadResult save(Part part, File directory, UploadOption option) throws IOException {
+		checkSize(part.getSize(), option);
+		try (InputStream input = part.getInputStream()) {
+			return save(input, part.getSubmittedFileName(), directory, option);
+		} finally {
+			part.delete();
+		}
+	}
+
+	/**
+	 * Store the upload content
+	 * @param input The content, not closed by this method
+	 * @param fileName The client file name, path is removed
+	 * @param directory The target directory
+	 * @param option The upload option
+	 * @return The stored upload
+	 * @throws IOException When I/O error, size limit exceeded or type not allowed
+	 */
+	public static UploadResult save(InputStream input, String fileName, File directory, UploadOption option)
+			throws IOException {
+		String name = cleanFileName(fileName);
+		String contentType = checkType(name, option);
+		MessageDigest digest = (option.getDigest() != null ? Digests.create(option.getDigest()) : null);
+
+		Path temp = Files.createTempFile(createDirectory(directory), TEMP_PREFIX, TEMP_SUFFIX);
+		try {
+			long size;
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				size = write(input, channel, 0, digest, option.getMaxSize());
+			}
+
+			File file = store(temp, directory, name, option.isOverwrite());
+			String hex = (digest != null ? Digests.toHex(digest.digest()) : null);
+			return new UploadResult(file, name, contentType, size, hex);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Remove the client path (C:\Users\..., ../) and control characters from the upload name
+	 * @param fileName The client file name
+	 * @return The file name
+	 * @throws IOException When the name is empty
+	 */
+	public static String cleanFileName(String fileName) throws IOException {
+		String name = (fileName == null ? "" : fileName);
+		int index = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+		name = name.substring(index + 1);
+
+		StringBuilder buffer = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char ch = name.charAt(i);
+			if (ch >= 0x20 && ch != 0x7F && ch != ':' && ch != '*' && ch != '?' && ch != '"'
+					&& ch != '<' && ch != '>' && ch != '|') {
+				buffer.append(ch);
+			}
+		}
+
+		name = buffer.toString().trim();
+		if (name.isEmpty() || ".".equals(name) || "..".equals(name)) {
+			throw new IOException("Invalid upload file name : " + fileName);
+		}
+		return name;
+	}
+
+	static void checkSize(long size, UploadOption option) throws IOException {
+		if (option.getMaxSize() >= 0 && size > option.getMaxSize()) {
+			throw new UploadSizeException("Upload size " + size + " exceeds the limit " + option.getMaxSize());
+		}
+	}
+
+	static String checkType(String fileName, UploadOption option) throws IOException {
+		String contentType = JSFMimeTypes.getMimeType(fileName);
+		if (!option.isAllowedType(contentType)) {
+			throw new IOException("Upload type not allowed : " + fileName);
+		}
+		return contentType;
+	}
+
+	static Path createDirectory(File directory) throws IOException {
+		return Files.createDirectories(directory.toPath());
+	}
+
+	/**
+	 * Write the input at the channel position, update the digest and check the size limit
+	 * @return Number of bytes written
+	 */
+	static long write(InputStream input, FileChannel channel, long position, MessageDigest digest, long maxSize)
+			throws IOException {
+		ByteBuffer buffer = BufferPool.heap().acquire(BufferPool.sizeFor(-1));
+		try {
+			byte[] bytes = buffer.array();
+			long written = 0;
+			int read;
+			while ((read = input.read(bytes, 0, bytes.length)) != -1) {
+				checkSize(position + written + read, maxSize);
+				if (digest != null) {
+					digest.update(bytes, 0, read);
+				}
+
+				buffer.clear();
+				buffer.limit(read);
+				while (buffer.hasRemaining()) {
+					written += channel.write(buffer, position + written);
+				}
+			}
+
+			return written;
+		} finally {
+			BufferPool.heap().release(buffer);
+		}
+	}
+
+	/**
+	 * Move the completed temp file to the target name, numbered name when exists and not overwrite
+	 */
+	static File store(Path temp, File directory, String fileName, boolean overwrite) throws IOException {
+		Path target = directory.toPath().resolve(fileName);
+		if (overwrite) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			return target.toFile();
+		}
+
+		int dot = fileName.lastIndexOf('.');
+		String base = (dot > 0 ? fileName.substring(0, dot) : fileName);
+		String extension = (dot > 0 ? fileName.substring(dot) : "");
+		for (int i = 1; ; i++) {
+			try {
+				Files.move(temp, target);
+				return target.toFile();
+			} catch (FileAlreadyExistsException ex) {
+				target = directory.toPath().resolve(base + " (" + i + ")" + extension);
+			}
+		}
+	}
+
+	private static void checkSize(long size, long maxSize) throws IOException {
+		if (maxSize >= 0 && size > maxSize) {
+			throw new UploadSizeException("Upload size exceeds the limit " + maxSize);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.upload;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Upload options for {@link FileUploads} and {@link ChunkedUploads}
+ * @author supot.jdev
+ * @version 1.0
+ */
+public class UploadOption implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private long maxSize = -1;
+	private String digest;
+	private boolean overwrite;
+	private Set<String> allowedTypes = Collections.emptySet();
+
+	/**
+	 * Maximum upload size in bytes, the upload is stopped and deleted when exceeded. [default -1, no limit]
+	 * @param maxSize Maximum bytes
+	 */
+	public UploadOption maxSize(long maxSize) {
+		this.maxSize = maxSize;
+		return this;
+	}
+
+	/**
+	 * Compute the content digest while the upload is written. [default null, disabled]
+	 * @param algorithm The digest algorithm, Ex. SHA-256
+	 */
+	public UploadOption digest(String algorithm) {
+		this.digest = algorithm;
+		return this;
+	}
+
+	/**
+	 * Replace existing file of the same name, otherwise a numbered name is used, Ex. report (1).pdf. [default false]
+	 * @param overwrite Replace existing file
+	 */
+	public UploadOption overwrite(boolean overwrite) {
+		this.overwrite = overwrite;
+		return this;
+	}
+
+	/**
+	 * Accept only these content types (by file name extension, {@link io.github.jdevlibs.faces.JSFMimeTypes}).
+	 * [default all types]
+	 * @param contentTypes The content types, Ex. application/pdf
+	 */
+	public UploadOption allowedTypes(String... contentTypes) {
+		Set<String> types = new HashSet<>();
+		for (String type : contentTypes) {
+			types.add(type.toLowerCase(Locale.ROOT));
+		}
+		this.allowedTypes = types;
+		return this;
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	public String getDigest() {
+		return digest;
+	}
+
+	public boolean isOverwrite() {
+		return overwrite;
+	}
+
+	public Set<String> getAllowedTypes() {
+		return Collections.unmodifiableSet(allowedTypes);
+	}
+
+	public boolean isAllowedType(String contentType) {
+		return allowedTypes.isEmpty()
+				|| (contentType != null && allowedTypes.contains(contentType.toLowerCase(Locale.ROOT)));
+	}
+}
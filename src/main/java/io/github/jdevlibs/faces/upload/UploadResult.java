@@ -0,0 +1,73 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.faces.upload;
+
+import java.io.File;
+import java.io.Serializable;
+
+/**
+ * Stored upload
+ * @author supot.jdev
+ * @version 1.0
+ */
+public class UploadResult implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final File file;
+	private final String fileName;
+	private final String contentType;
+	private final long size;
+	private final String digest;
+
+	UploadResult(File file, String fileName, String contentType, long size, String digest) {
+		this.file = file;
+		this.fileName = fileName;
+		this.contentType = contentType;
+		this.size = size;
+		this.digest = digest;
+	}
+
+	/**
+	 * @return The stored file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return The client file name (without path)
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return Lower case hex digest, null when not requested
+	 */
+	public String getDigest() {
+		return digest;
+	}
+}
@@ -0,0 +1,201 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+
+package io.github.jdevlibs.primefaces;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.LazyDataModel;
+import org.primefaces.model.SortMeta;
+
+import io.github.jdevlibs.faces.FacesUtils;
+import io.github.jdevlibs.faces.JSFValidators;
+import io.github.jdevlibs.faces.session.SessionDataset;
+
+/**
+ * Lazy p:dataTable model of the {@link SessionDataset} session key, only the rendered page is loaded.
+ * Sorting by column field (bean property path or map key, sortFunction is not used) builds a sorted copy
+ * of the dataset once per sort order, kept in the session under <code>key + "#sorted"</code>; the rows are
+ * read in the heap while the copy is built. Filtering is not supported, filter before the dataset is created.
+ * <pre>
+ * FacesUtils.addSessionDataset("searchResult", rows);
+ * model = new PFDatasetModel&lt;&gt;("searchResult");
+ * </pre>
+ * @param <T> Row type
+ * @author supot.jdev
+ * @version 1.0
+ */
+public class PFDatasetModel<T> extends LazyDataModel<T> {
+	private static final long serialVersionUID = 1L;
+	private static final String SORTED_SUFFIX = "#sorted";
+
+	private final String key;
+	private String sortedBy;
+
+	public PFDatasetModel(String key) {
+		this.key = key;
+	}
+
+	@Override
+	public int count(Map<String, FilterMeta> filterBy) {
+		checkFilter(filterBy);
+		SessionDataset<T> dataset = FacesUtils.getSessionDataset(key);
+		return (JSFValidators.isNull(dataset) ? 0 : dataset.size());
+	}
+
+	@Override
+	public List<T> load(int first, int pageSize, Map<String, SortMeta> sortBy, Map<String, FilterMeta> filterBy) {
+		checkFilter(filterBy);
+		SessionDataset<T> dataset = FacesUtils.getSessionDataset(key);
+		if (JSFValidators.isNull(dataset)) {
+			return Collections.emptyList();
+		}
+
+		try {
+			return getSorted(dataset, sortBy).getPage(first, pageSize);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * Sorted copy of the dataset, built again when the sort order or the dataset is changed
+	 */
+	private SessionDataset<T> getSorted(SessionDataset<T> dataset, Map<String, SortMeta> sortBy) throws IOException {
+		List<SortMeta> sorts = new ArrayList<>();
+		if (JSFValidators.isNotEmpty(sortBy)) {
+			for (SortMeta sort : sortBy.values()) {
+				if (sort.isActive()) {
+					sorts.add(sort);
+				}
+			}
+		}
+
+		String sortedKey = key + SORTED_SUFFIX;
+		if (sorts.isEmpty()) {
+			if (sortedBy != null) {
+				sortedBy = null;
+				FacesUtils.removeSession(sortedKey);
+			}
+			return dataset;
+		}
+
+		Collections.sort(sorts);
+		StringBuilder signature = new StringBuilder().append(System.identityHashCode(dataset));
+		for (SortMeta sort : sorts) {
+			signature.append(',').append(sort.getField()).append(':').append(sort.getOrder());
+		}
+
+		SessionDataset<T> sorted = FacesUtils.getSessionDataset(sortedKey);
+		if (sorted != null && signature.toString().equals(sortedBy)) {
+			return sorted;
+		}
+
+		List<T> rows = new ArrayList<>(dataset.size());
+		dataset.forEach(rows::add);
+		rows.sort(comparator(sorts));
+		sorted = FacesUtils.addSessionDataset(sortedKey, rows);
+		sortedBy = signature.toString();
+		return sorted;
+	}
+
+	private static void checkFilter(Map<String, FilterMeta> filterBy) {
+		if (JSFValidators.isEmpty(filterBy)) {
+			return;
+		}
+
+		for (FilterMeta filter : filterBy.values()) {
+			if (filter.isActive()) {
+				throw new UnsupportedOperationException("PFDatasetModel does not filter [" + filter.getField()
+						+ "], filter the rows before the session dataset is created");
+			}
+		}
+	}
+
+	private static <T> Comparator<T> comparator(List<SortMeta> sorts) {
+		Comparator<T> comparator = null;
+		for (SortMeta sort : sorts) {
+			Comparator<T> column = (row1, row2) -> compare(sort,
+					getProperty(row1, sort.getField()), getProperty(row2, sort.getField()));
+			if (sort.getOrder().isDescending()) {
+				column = column.reversed();
+			}
+			comparator = (comparator == null ? column : comparator.thenComparing(column));
+		}
+		return comparator;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static int compare(SortMeta sort, Object value1, Object value2) {
+		if (value1 == null || value2 == null) {
+			if (value1 == value2) {
+				return 0;
+			}
+			// nullSortOrder 1: null is greater than any value
+			int nullOrder = (sort.getNullSortOrder() > 0 ? 1 : -1);
+			return (value1 == null ? nullOrder : -nullOrder);
+		}
+		if (value1 instanceof String && value2 instanceof String && !sort.isCaseSensitiveSort()) {
+			return ((String) value1).compareToIgnoreCase((String) value2);
+		}
+		if (value1 instanceof Comparable && value1.getClass().isInstance(value2)) {
+			return ((Comparable) value1).compareTo(value2);
+		}
+		return value1.toString().compareTo(value2.toString());
+	}
+
+	/**
+	 * Value of the property path, Ex. customer.name
+	 */
+	private static Object getProperty(Object row, String field) {
+		if (JSFValidators.isEmpty(field)) {
+			return row;
+		}
+
+		Object value = row;
+		for (String name : field.split("\\.")) {
+			if (value == null) {
+				return null;
+			}
+			value = (value instanceof Map ? ((Map<?, ?>) value).get(name) : invokeGetter(value, name));
+		}
+		return value;
+	}
+
+	private static Object invokeGetter(Object bean, String name) {
+		String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		try {
+			Method method;
+			try {
+				method = bean.getClass().getMethod("get" + suffix);
+			} catch (NoSuchMethodException ex) {
+				method = bean.getClass().getMethod("is" + suffix);
+			}
+			return method.invoke(bean);
+		} catch (ReflectiveOperationException ex) {
+			throw new IllegalArgumentException("Cannot sort by [" + name + "] of " + bean.getClass().getName(), ex);
+		}
+	}
+}
@@ -25,6 +25,8 @@ import org.primefaces.event.SelectEvent;
 import jakarta.faces.application.FacesMessage;
 import io.github.jdevlibs.faces.FacesUtils;
 import io.github.jdevlibs.faces.JSFValidators;
+import io.github.jdevlibs.faces.download.DownloadOption;
+import io.github.jdevlibs.faces.download.DownloadProgress;
 
 /**
 * @author supot.jdev
@@ -167,6 +169,28 @@ public final class PFUtils {
 		PrimeFaces.current().ajax().update(clientId);
 	}
 
+	/**
+	 * Add download progress to the ajax callback args (percent, bytes, total, rate, done, failed),
+	 * for p:remoteCommand or p:poll oncomplete="updateProgress(args)"
+	 * @param progressId The {@link DownloadOption#progressId(String)} id
+	 * @return false when the progress is not found (not started or expired)
+	 */
+	public static boolean addDownloadProgress(String progressId) {
+		DownloadProgress progress = DownloadProgress.get(progressId);
+		if (JSFValidators.isNull(progress)) {
+			return false;
+		}
+
+		PrimeFaces.Ajax ajax = PrimeFaces.current().ajax();
+		ajax.addCallbackParam("percent", progress.getPercent());
+		ajax.addCallbackParam("bytes", progress.getBytes());
+		ajax.addCallbackParam("total", progress.getTotal());
+		ajax.addCallbackParam("rate", progress.getBytesPerSecond());
+		ajax.addCallbackParam("done", progress.isDone());
+		ajax.addCallbackParam("failed", progress.isFailed());
+		return true;
+	}
+
 	public static void scrollTo(String clientId) {
 		if (JSFValidators.isNotEmpty(clientId)) {
 			PrimeFaces.current().scrollTo(clientId);
@@ -0,0 +1,137 @@
+/*  ---------------------------------------------------------------------------
+ *  * Copyright 2023 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  ---------------------------------------------------------------------------
+ */
+package io.github.jdevlibs.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Bounded concurrent cache with approximate LRU eviction.
+ * Reads are lock-free, when the cache is full the least recently used 10% entries are evicted.
+ * @author supot.jdev
+ * @version 1.0
+ */
+public final class LruCache<K, V> {
+    private final int maxSize;
+    private final ConcurrentHashMap<K, Entry<V>> entries;
+
+    public LruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        entry.access = System.nanoTime();
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        entries.put(key, new Entry<>(value));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Return cached value or compute it, the value can be computed more than once by concurrent callers.
+     * @param key The cache key
+     * @param loader Compute value function, null value is not cached
+     * @return The cached or computed value
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+
+        value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    public V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return (entry == null ? null : entry.value);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private synchronized void evict() {
+        int size = entries.size();
+        if (size <= maxSize) {
+            return;
+        }
+
+        // Snapshot access time, the entries can be touched while sorting
+        List<Candidate<K, V>> items = new ArrayList<>(size);
+        for (Map.Entry<K, Entry<V>> item : entries.entrySet()) {
+            items.add(new Candidate<>(item.getKey(), item.getValue()));
+        }
+        items.sort((a, b) -> Long.compare(a.access, b.access));
+
+        int count = size - maxSize + Math.max(1, maxSize / 10);
+        for (int i = 0; i < count && i < items.size(); i++) {
+            Candidate<K, V> item = items.get(i);
+            entries.remove(item.key, item.entry);
+        }
+    }
+
+    private static final class Candidate<K, V> {
+        private final K key;
+        private final Entry<V> entry;
+        private final long access;
+
+        private Candidate(K key, Entry<V> entry) {
+            this.key = key;
+            this.entry = entry;
+            this.access = entry.access;
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private volatile long access;
+
+        private Entry(V value) {
+            this.value = value;
+            this.access = System.nanoTime();
+        }
+    }
+}